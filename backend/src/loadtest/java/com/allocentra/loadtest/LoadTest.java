@@ -0,0 +1,335 @@
+package com.allocentra.loadtest;
+
+import com.allocentra.AllocentraApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a mixed REST workload against an in-process instance on the test profile.
+ *
+ * Seeds ACTIVE cycles with pools and requests, then runs closed-loop virtual-thread
+ * clients against the real HTTP port for the configured duration. Latencies after
+ * the warmup go into one HdrHistogram per operation; the report lists throughput
+ * and percentiles per operation. Settings are read from loadtest.* system properties.
+ */
+public final class LoadTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final int durationSeconds = Integer.getInteger("loadtest.duration", 60);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 10);
+    private final int clients = Integer.getInteger("loadtest.clients", 64);
+    private final int cycleCount = Integer.getInteger("loadtest.cycles", 4);
+    private final int requestsPerCycle = Integer.getInteger("loadtest.requests-per-cycle", 250);
+    private final String mix = System.getProperty("loadtest.mix", "intake:50,run:5,status:30,list:15");
+    private final Path report = Path.of(System.getProperty("loadtest.report", "target/loadtest-report.txt"));
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final List<String> cycleIds = new CopyOnWriteArrayList<>();
+    private final List<String> runIds = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient http = HttpClient.newBuilder()
+        .executor(executor)
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+
+    private String baseUrl;
+    private volatile boolean recording;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().execute();
+        System.exit(0);
+    }
+
+    private void execute() throws Exception {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+
+        // Command-line arguments so they win over the profile's own logging levels
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AllocentraApplication.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--allocentra.rate-limit.enabled=false",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.allocentra=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+            );
+        try {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+
+            Instant seedStart = Instant.now();
+            seed();
+            System.out.printf("Seeded %d cycles x %d requests in %d ms%n",
+                cycleCount, requestsPerCycle, Duration.between(seedStart, Instant.now()).toMillis());
+
+            drive();
+            String text = render();
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            Files.writeString(report, text);
+            System.out.print(text);
+            System.out.println("Report written to " + report.toAbsolutePath());
+        } finally {
+            executor.shutdownNow();
+            context.close();
+        }
+    }
+
+    private void seed() throws Exception {
+        for (int c = 0; c < cycleCount; c++) {
+            Map<String, Object> cycle = new HashMap<>();
+            cycle.put("name", "Load test cycle " + c);
+            cycle.put("status", "ACTIVE");
+            cycle.put("startDate", LocalDate.now().toString());
+            cycle.put("endDate", LocalDate.now().plusMonths(3).toString());
+            cycle.put("budgetPools", List.of(Map.of("category", "MONEY", "totalAmount", 50_000L * requestsPerCycle)));
+            cycle.put("resourcePools", List.of(
+                Map.of("category", "VEHICLES", "resourceType", "TRUCK", "totalQuantity", requestsPerCycle / 4),
+                Map.of("category", "EQUIPMENT", "resourceType", "LAPTOP", "totalQuantity", requestsPerCycle / 2)
+            ));
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/cycles"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(cycle)))
+                .build());
+            cycleIds.add(JSON.readTree(response.body()).get("id").asText());
+        }
+
+        List<Future<?>> pending = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(clients);
+        for (String cycleId : cycleIds) {
+            for (int r = 0; r < requestsPerCycle; r++) {
+                inFlight.acquire();
+                pending.add(executor.submit(() -> {
+                    try {
+                        send(intakeRequest(cycleId, ThreadLocalRandom.current()));
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : pending) {
+            future.get();
+        }
+    }
+
+    private void drive() throws InterruptedException {
+        Operation[] weighted = weightedOperations();
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            executor.submit(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        perform(weighted[random.nextInt(weighted.length)], random);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        TimeUnit.NANOSECONDS.sleep(recordFrom - System.nanoTime());
+        recording = true;
+        System.out.printf("Warmup done, recording for %d s with %d clients%n", durationSeconds, clients);
+        done.await();
+    }
+
+    private void perform(Operation operation, ThreadLocalRandom random) {
+        String cycleId = cycleIds.get(random.nextInt(cycleIds.size()));
+        if ((operation == Operation.RUN_STATUS) && runIds.isEmpty()) {
+            operation = Operation.RUN_SUBMIT;
+        }
+
+        HttpRequest request = switch (operation) {
+            case INTAKE -> intakeRequest(cycleId, random);
+            case RUN_SUBMIT -> post("/runs", Map.of("cycleId", cycleId, "force", true));
+            case RUN_STATUS -> get("/runs/" + runIds.get(random.nextInt(runIds.size())));
+            case RUN_LIST -> get("/runs?cycleId=" + cycleId);
+        };
+
+        long started = System.nanoTime();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+            boolean ok = response.statusCode() < 400;
+            if (ok && operation == Operation.RUN_SUBMIT) {
+                runIds.add(JSON.readTree(response.body()).get("runId").asText());
+            }
+            record(operation, micros, ok);
+        } catch (IOException e) {
+            record(operation, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(Operation operation, long micros, boolean ok) {
+        if (!recording) {
+            return;
+        }
+        Stats operationStats = stats.get(operation);
+        operationStats.latency.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+        if (!ok) {
+            operationStats.errors.increment();
+        }
+    }
+
+    private HttpRequest intakeRequest(String cycleId, Random random) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("cycleId", cycleId);
+        request.put("title", "Load test request " + random.nextInt(1_000_000));
+        request.put("priority", 1 + random.nextInt(5));
+        request.put("strategic", 1 + random.nextInt(5));
+        request.put("impact", List.of("LOW", "MEDIUM", "HIGH", "CRITICAL").get(random.nextInt(4)));
+        request.put("risk", List.of("LOW", "OPERATIONAL", "SAFETY", "LEGAL").get(random.nextInt(4)));
+        request.put("urgencyDeadline", LocalDate.now().plusDays(random.nextInt(120)).toString());
+        switch (random.nextInt(3)) {
+            case 0 -> {
+                request.put("category", "MONEY");
+                request.put("amountRequested", 10_000 + random.nextInt(90_000));
+                request.put("minimumViableAllocation", 5_000);
+            }
+            case 1 -> {
+                request.put("category", "VEHICLES");
+                request.put("resourceType", "TRUCK");
+                request.put("quantityRequested", 1 + random.nextInt(3));
+            }
+            default -> {
+                request.put("category", "EQUIPMENT");
+                request.put("resourceType", "LAPTOP");
+                request.put("quantityRequested", 1 + random.nextInt(5));
+            }
+        }
+        return post("/requests", request);
+    }
+
+    private HttpRequest post(String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body)))
+                .build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IOException(request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    private Operation[] weightedOperations() {
+        List<Operation> weighted = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split(":");
+            Operation operation = Operation.fromKey(entry[0]);
+            for (int i = 0; i < Integer.parseInt(entry[1]); i++) {
+                weighted.add(operation);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix selects no operation: " + mix);
+        }
+        return weighted.toArray(Operation[]::new);
+    }
+
+    private String render() {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.printf("Allocentra load test, %s%n", Instant.now());
+        out.printf("clients=%d duration=%ds warmup=%ds cycles=%d requests-per-cycle=%d mix=%s runtime=%s%n%n",
+            clients, durationSeconds, warmupSeconds, cycleCount, requestsPerCycle, mix, Runtime.version());
+        out.printf("%-12s %9s %7s %9s %9s %9s %9s %9s %9s %9s%n",
+            "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms", "mean ms");
+
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram latency = stats.get(operation).latency;
+            long count = latency.getTotalCount();
+            total += count;
+            out.printf("%-12s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                operation.key,
+                count,
+                stats.get(operation).errors.sum(),
+                (double) count / durationSeconds,
+                millis(latency.getValueAtPercentile(50)),
+                millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMaxValue()),
+                latency.getMean() / 1000.0);
+        }
+        out.printf("%-12s %9d %7s %9.1f%n", "total", total, "", (double) total / durationSeconds);
+        out.flush();
+        return text.toString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private enum Operation {
+        INTAKE("intake"),
+        RUN_SUBMIT("run"),
+        RUN_STATUS("status"),
+        RUN_LIST("list");
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        static Operation fromKey(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown load test operation: " + key);
+        }
+    }
+
+    private static final class Stats {
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,246 @@
+package com.allocentra.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trains the class-data-sharing archive of the startup build and measures how soon
+ * each launch mode serves its first request.
+ *
+ * Every launch is a fresh JVM on the thin jar of the startup profile. Readiness is
+ * the time from starting the process to the first 200 from /api/health, polled every
+ * few milliseconds, which covers JVM boot, context refresh and the first request
+ * through the servlet stack. In train mode the AOT launch is run once with the
+ * archive recorded at exit after it has served a few requests. Settings are read
+ * from startup.* system properties.
+ */
+public final class StartupBenchmark {
+
+    private static final Pattern STARTED = Pattern.compile("Started \\w+ in ([0-9.]+) seconds");
+    private static final long POLL_MILLIS = 5;
+
+    private final String mode = System.getProperty("startup.mode", "measure");
+    private final Path jar = Path.of(System.getProperty("startup.jar", "target/startup/allocentra-backend-1.0.0-startup.jar"));
+    private final Path archive = Path.of(System.getProperty("startup.archive", "target/startup/allocentra.jsa"));
+    private final int iterations = Integer.getInteger("startup.iterations", 5);
+    private final int timeoutSeconds = Integer.getInteger("startup.timeout", 120);
+    private final String jvmArgs = System.getProperty("startup.jvm-args", "-Xmx1g");
+    private final String appArgs = System.getProperty("startup.app-args", "");
+    private final Path report = Path.of(System.getProperty("startup.report", "target/startup-report.txt"));
+
+    private final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(1))
+        .build();
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmark benchmark = new StartupBenchmark();
+        if ("train".equals(benchmark.mode)) {
+            benchmark.train();
+        } else {
+            benchmark.measure();
+        }
+    }
+
+    private void train() throws Exception {
+        Files.deleteIfExists(archive);
+        Launch launch = launch(Mode.AOT, List.of("-XX:ArchiveClassesAtExit=" + archive), "training");
+        try {
+            // Load the request path as well, not only the context
+            for (String path : List.of("/api/health", "/api/runs", "/api/dashboard/summary", "/api/health")) {
+                http.send(HttpRequest.newBuilder(URI.create(launch.baseUrl + path)).GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+            }
+        } finally {
+            // A normal shutdown, so the archive is written on the way out
+            launch.stop();
+        }
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("Training run did not write " + archive + "; see " + launch.log);
+        }
+        System.out.printf("Trained %s (%d KB) in %d ms to first health response%n",
+            archive, Files.size(archive) / 1024, launch.readyMillis);
+    }
+
+    private void measure() throws Exception {
+        Map<Mode, List<Launch>> launches = new EnumMap<>(Mode.class);
+        for (Mode launchMode : Mode.values()) {
+            if (launchMode == Mode.AOT_CDS && !Files.exists(archive)) {
+                System.out.println("No archive at " + archive + ", skipping " + launchMode.label);
+                continue;
+            }
+            List<Launch> runs = new ArrayList<>();
+            for (int i = 0; i < iterations; i++) {
+                Launch launch = launch(launchMode, launchMode.extraArgs(archive), launchMode.name().toLowerCase() + "-" + i);
+                launch.stop();
+                runs.add(launch);
+                System.out.printf("%-10s #%d ready in %d ms%n", launchMode.label, i, launch.readyMillis);
+            }
+            launches.put(launchMode, runs);
+        }
+
+        String text = render(launches);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.writeString(report, text);
+        System.out.print(text);
+        System.out.println("Report written to " + report.toAbsolutePath());
+    }
+
+    private Launch launch(Mode launchMode, List<String> extraArgs, String name) throws Exception {
+        int port = freePort();
+        Path log = jar.toAbsolutePath().getParent().resolve("logs").resolve(name + ".log");
+        Files.createDirectories(log.getParent());
+
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(split(jvmArgs));
+        command.addAll(extraArgs);
+        if (launchMode != Mode.JIT) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        command.addAll(split(appArgs));
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        Launch launch = new Launch(process, "http://localhost:" + port, log);
+        try {
+            launch.readyMillis = TimeUnit.NANOSECONDS.toMillis(awaitHealthy(launch, started) - started);
+        } catch (Exception e) {
+            launch.stop();
+            throw e;
+        }
+        return launch;
+    }
+
+    /**
+     * Poll until the health endpoint answers 200; returns the nano time it did
+     */
+    private long awaitHealthy(Launch launch, long started) throws Exception {
+        HttpRequest health = HttpRequest.newBuilder(URI.create(launch.baseUrl + "/api/health"))
+            .timeout(Duration.ofSeconds(5))
+            .GET()
+            .build();
+        long deadline = started + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (System.nanoTime() < deadline) {
+            if (!launch.process.isAlive()) {
+                throw new IllegalStateException("Instance exited with " + launch.process.exitValue() + "; see " + launch.log);
+            }
+            try {
+                if (http.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return System.nanoTime();
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        throw new IllegalStateException("Instance not healthy after " + timeoutSeconds + " s; see " + launch.log);
+    }
+
+    private String render(Map<Mode, List<Launch>> launches) throws IOException {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.printf("Allocentra startup benchmark, %s%n", Instant.now());
+        out.printf("iterations=%d jvm-args=%s runtime=%s cpus=%d%n%n",
+            iterations, jvmArgs, Runtime.version(), Runtime.getRuntime().availableProcessors());
+        out.printf("%-10s %9s %9s %9s %9s %12s%n", "mode", "min ms", "p50 ms", "mean ms", "max ms", "refresh ms");
+
+        for (Map.Entry<Mode, List<Launch>> entry : launches.entrySet()) {
+            long[] ready = entry.getValue().stream().mapToLong(launch -> launch.readyMillis).sorted().toArray();
+            long[] refresh = new long[ready.length];
+            int reported = 0;
+            for (Launch launch : entry.getValue()) {
+                long millis = reportedStartMillis(launch.log);
+                if (millis >= 0) {
+                    refresh[reported++] = millis;
+                }
+            }
+            Arrays.sort(refresh, 0, reported);
+            out.printf("%-10s %9d %9d %9.1f %9d %12s%n",
+                entry.getKey().label,
+                ready[0],
+                ready[ready.length / 2],
+                Arrays.stream(ready).average().orElse(0),
+                ready[ready.length - 1],
+                reported > 0 ? Long.toString(refresh[reported / 2]) : "-");
+        }
+        out.println();
+        out.println("Ready: process start to first 200 from /api/health. Refresh: median of what Spring Boot logs as its start time.");
+        out.flush();
+        return text.toString();
+    }
+
+    /**
+     * Start time Spring Boot logged, in milliseconds, or -1 when it logged none
+     */
+    private static long reportedStartMillis(Path log) throws IOException {
+        Matcher matcher = STARTED.matcher(Files.readString(log));
+        return matcher.find() ? Math.round(Double.parseDouble(matcher.group(1)) * 1000) : -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<String> split(String args) {
+        return args.isBlank() ? List.of() : List.of(args.trim().split("\\s+"));
+    }
+
+    private enum Mode {
+        JIT("jit"),
+        AOT("aot"),
+        AOT_CDS("aot+cds");
+
+        final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        List<String> extraArgs(Path archive) {
+            return this == AOT_CDS ? List.of("-XX:SharedArchiveFile=" + archive) : List.of();
+        }
+    }
+
+    private static final class Launch {
+        final Process process;
+        final String baseUrl;
+        final Path log;
+        long readyMillis;
+
+        Launch(Process process, String baseUrl, Path log) {
+            this.process = process;
+            this.baseUrl = baseUrl;
+            this.log = log;
+        }
+
+        void stop() throws InterruptedException {
+            process.destroy();
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
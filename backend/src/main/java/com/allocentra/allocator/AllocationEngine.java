@@ -2,15 +2,29 @@ package com.allocentra.allocator;
 
 import com.allocentra.domain.*;
 import com.allocentra.scoring.ScoringEngine;
+import com.allocentra.scoring.ScoringFormula;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Core allocation engine that distributes resources based on scores and constraints
@@ -20,24 +34,60 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AllocationEngine {
 
+    private static final List<AllocationResult> END_OF_RESULTS = List.of();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final BigDecimal CENT = new BigDecimal("0.01");
+    // Below this a share's remainder is floating-point noise rather than a part of a cent
+    private static final double FAIR_SHARE_REMAINDER_EPSILON = 1e-9;
+
     private final ScoringEngine scoringEngine;
     private final ConstraintEngine constraintEngine;
 
+    @Value("${allocentra.engine.parallel.enabled:false}")
+    private boolean parallelAllocation;
+
+    @Value("${allocentra.engine.parallel.min-requests:50000}")
+    private int parallelMinRequests;
+
+    @Value("${allocentra.engine.parallel.chunk-size:4096}")
+    private int parallelChunkSize;
+
+    @Value("${allocentra.engine.pipeline.chunk-size:2000}")
+    private int pipelineChunkSize;
+
+    @Value("${allocentra.engine.pipeline.depth:4}")
+    private int pipelineDepth;
+
     /**
-     * Execute allocation for a cycle
+     * Execute allocation for a cycle, attaching every result to the run
      */
     public AllocationRun execute(AllocationCycle cycle, AllocationRun run) {
+        return execute(cycle, run, chunk -> chunk.forEach(run::addResult));
+    }
+
+    /**
+     * Execute allocation for a cycle, handing results to the sink in rank order a chunk at a time.
+     * Chunks are explained on a separate thread while the sink takes earlier ones, and the explainer
+     * never gets more than {@code allocentra.engine.pipeline.depth} chunks ahead of the sink.
+     */
+    public AllocationRun execute(AllocationCycle cycle, AllocationRun run, ResultSink sink) {
         log.info("Starting allocation for cycle: {}", cycle.getName());
         
         run.setStatus(AllocationRun.RunStatus.RUNNING);
         run.setStartedAt(Instant.now());
         run.setTotalRequests(cycle.getRequests().size());
+        LocalDate evaluationDate = run.getEvaluationDate() != null
+            ? run.getEvaluationDate()
+            : LocalDate.now();
+        ScoringFormula formula = scoringEngine.formulaFor(cycle);
+        long cpuStart = threadCpuNanos();
+        AtomicLong explainerCpu = new AtomicLong();
         
         try {
             // Phase 1: Score all requests
             run.setCurrentPhase("Scoring requests");
             run.setProgress(0.1);
-            List<ScoredRequest> scoredRequests = scoreRequests(cycle.getRequests());
+            List<ScoredRequest> scoredRequests = scoreRequests(cycle.getRequests(), evaluationDate, formula);
             
             // Phase 2: Sort by score (highest first)
             run.setCurrentPhase("Ranking requests");
@@ -47,21 +97,25 @@ public class AllocationEngine {
             // Phase 3: Allocate greedily with constraints
             run.setCurrentPhase("Allocating resources");
             run.setProgress(0.3);
+            BudgetTree budgets = BudgetTree.of(cycle.getBudgetPools());
+            RunRollup rollup = new RunRollup(cycle, budgets);
             List<AllocationResult> results = allocateResources(
                 rankedRequests, 
                 cycle, 
-                run
+                budgets,
+                run,
+                rollup
             );
             
             // Phase 4: Generate explanations
             run.setCurrentPhase("Generating explanations");
             run.setProgress(0.8);
-            generateExplanations(results, rankedRequests);
+            explainInChunks(results, cycle, budgets, run, evaluationDate, formula, sink, explainerCpu);
             
             // Phase 5: Calculate summary
             run.setCurrentPhase("Finalizing");
             run.setProgress(0.95);
-            calculateSummary(run, results);
+            calculateSummary(run, rollup);
             
             run.setStatus(AllocationRun.RunStatus.COMPLETED);
             run.setCompletedAt(Instant.now());
@@ -75,19 +129,40 @@ public class AllocationEngine {
                 run.getDeferredCount(), run.getDeniedCount());
             
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Allocation failed", e);
             run.setStatus(AllocationRun.RunStatus.FAILED);
             run.setErrorMessage(e.getMessage());
             run.setCompletedAt(Instant.now());
         }
+        // Work handed to the common pool in parallel mode is not included
+        run.setCpuTimeMs((threadCpuNanos() - cpuStart + explainerCpu.get()) / 1_000_000);
         
         return run;
     }
 
-    private List<ScoredRequest> scoreRequests(List<Request> requests) {
-        return requests.stream()
+    private static long threadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private boolean runsInParallel(int requestCount) {
+        return parallelAllocation && requestCount >= parallelMinRequests;
+    }
+
+    private List<ScoredRequest> scoreRequests(
+        List<Request> requests,
+        LocalDate evaluationDate,
+        ScoringFormula formula
+    ) {
+        // Scoring is independent per request and the ordered collect keeps tie order stable
+        Stream<Request> stream = runsInParallel(requests.size())
+            ? requests.parallelStream()
+            : requests.stream();
+        return stream
             .map(request -> {
-                double score = scoringEngine.calculateScore(request);
+                double score = scoringEngine.calculateScore(request, evaluationDate, formula);
                 request.setScore(score);
                 return new ScoredRequest(request, score);
             })
@@ -103,59 +178,420 @@ public class AllocationEngine {
     private List<AllocationResult> allocateResources(
         List<ScoredRequest> rankedRequests,
         AllocationCycle cycle,
-        AllocationRun run
+        BudgetTree budgets,
+        AllocationRun run,
+        RunRollup rollup
     ) {
-        List<AllocationResult> results = new ArrayList<>();
-        Map<String, BigDecimal> budgetRemaining = initializeBudgetMap(cycle);
-        Map<String, BigDecimal> resourceRemaining = initializeResourceMap(cycle);
-        Map<String, AllocationResult> resultMap = new HashMap<>();
-        
+        // Ranks are global, so results are created up front and filled in place
+        List<AllocationResult> results = new ArrayList<>(rankedRequests.size());
         int rank = 1;
         for (ScoredRequest scoredRequest : rankedRequests) {
             Request request = scoredRequest.request();
-            
-            AllocationResult result = AllocationResult.builder()
+            results.add(AllocationResult.builder()
                 .request(request)
                 .status(Request.RequestStatus.PENDING)
                 .amountRequested(request.getAmountRequested())
                 .quantityRequested(request.getQuantityRequested())
                 .score(scoredRequest.score())
                 .rank(rank++)
-                .constraintViolations(new ArrayList<>())
-                .build();
+                .build());
+            rollup.expect(request);
+        }
+        
+        Map<String, BigDecimal> resourceRemaining = initializeResourceMap(cycle);
+        
+        if (runsInParallel(results.size())) {
+            allocateComponents(results, budgets, resourceRemaining, run, rollup);
+        } else {
+            allocateByMode(results, new HashMap<>(), budgets, resourceRemaining, run, rollup);
+        }
+        
+        return results;
+    }
+
+    private void allocateByMode(
+        List<AllocationResult> rankedResults,
+        Map<String, AllocationResult> resultMap,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining,
+        AllocationRun run,
+        RunRollup rollup
+    ) {
+        if (run.getAllocationMode() == AllocationRun.AllocationMode.FAIR_SHARE) {
+            allocateFairShares(rankedResults, resultMap, budgets, resourceRemaining, run, rollup);
+        } else {
+            allocateInRankOrder(rankedResults, resultMap, budgets, resourceRemaining, run, rollup);
+        }
+    }
+
+    /**
+     * Allocate independent components on fork-join tasks.
+     * Components share no pool and no dependency edge, so every component sees
+     * exactly the state it would see in the sequential pass.
+     */
+    private void allocateComponents(
+        List<AllocationResult> results,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining,
+        AllocationRun run,
+        RunRollup rollup
+    ) {
+        List<List<AllocationResult>> components = RequestComponents.partition(results);
+        log.debug("Allocating {} requests across {} independent components",
+            results.size(), components.size());
+        
+        // Components touch disjoint keys, the concurrent maps only guard the table itself
+        Map<String, AllocationResult> resultMap = new ConcurrentHashMap<>(results.size());
+        Map<String, BigDecimal> sharedResources = new ConcurrentHashMap<>(resourceRemaining);
+        
+        ForkJoinPool.commonPool().invoke(new ComponentTask(
+            components, 0, components.size(), resultMap, budgets, sharedResources, run, rollup
+        ));
+    }
+
+    private void allocateInRankOrder(
+        List<AllocationResult> rankedResults,
+        Map<String, AllocationResult> resultMap,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining,
+        AllocationRun run,
+        RunRollup rollup
+    ) {
+        // Once a pool is dry every request still waiting on it is denied (or deferred
+        // on dependencies), so those are skipped here and settled in bulk afterwards
+        PoolIndex pools = PoolIndex.of(rankedResults);
+        boolean[] dry = new boolean[pools.poolCount()];
+        int[] visited = new int[pools.poolCount()];
+        int[] tailFrom = new int[pools.poolCount()];
+        int livePools = 0;
+        for (int p = 0; p < pools.poolCount(); p++) {
+            dry[p] = remaining(pools.keys[p], budgets, resourceRemaining).signum() == 0;
+            if (dry[p]) {
+                tailFrom[p] = pools.start[p];
+            } else {
+                livePools++;
+            }
+        }
+        
+        int position = 0;
+        for (; position < rankedResults.size() && livePools > 0; position++) {
+            AllocationResult result = rankedResults.get(position);
+            int pool = pools.poolOf[position];
+            visited[pool]++;
             
-            // Check dependencies first
-            if (!constraintEngine.checkDependencies(request, resultMap)) {
-                result.setStatus(Request.RequestStatus.DEFERRED);
-                result.setReason("Dependencies not met");
-                result.getConstraintViolations().add("DEPENDENCY_NOT_MET");
-                results.add(result);
-                resultMap.put(request.getId(), result);
+            if (dry[pool] && deniedWhenExhausted(result.getRequest(), run)) {
                 continue;
             }
             
-            // Try to allocate
-            if (request.getCategory() == ResourceCategory.MONEY) {
-                allocateMonetary(request, result, budgetRemaining, run);
+            allocateOne(result, resultMap, budgets, resourceRemaining, run, rollup);
+            
+            if (!dry[pool] && remaining(pools.keys[pool], budgets, resourceRemaining).signum() == 0) {
+                dry[pool] = true;
+                tailFrom[pool] = pools.start[pool] + visited[pool];
+                livePools--;
+            }
+        }
+        
+        // Every pool is dry: only requests that still fit an empty pool need the full path
+        for (; position < rankedResults.size(); position++) {
+            AllocationResult result = rankedResults.get(position);
+            if (!deniedWhenExhausted(result.getRequest(), run)) {
+                allocateOne(result, resultMap, budgets, resourceRemaining, run, rollup);
+            }
+        }
+        
+        for (int p = 0; p < pools.poolCount(); p++) {
+            if (!dry[p]) {
+                continue;
+            }
+            for (int i = tailFrom[p]; i < pools.start[p + 1]; i++) {
+                AllocationResult result = rankedResults.get(pools.positions[i]);
+                if (result.getStatus() == Request.RequestStatus.PENDING) {
+                    denyExhausted(result, resultMap, rollup);
+                }
+            }
+        }
+    }
+
+    private void allocateOne(
+        AllocationResult result,
+        Map<String, AllocationResult> resultMap,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining,
+        AllocationRun run,
+        RunRollup rollup
+    ) {
+        Request request = result.getRequest();
+        
+        // Check dependencies first
+        if (!constraintEngine.checkDependencies(request, result.getRank(), resultMap)) {
+            deferOnDependencies(result);
+        } else if (request.getCategory() == ResourceCategory.MONEY) {
+            allocateMonetary(request, result, budgets, run);
+        } else {
+            allocateResource(request, result, resourceRemaining, run);
+        }
+        
+        resultMap.put(request.getId(), result);
+        rollup.record(result);
+    }
+
+    /**
+     * Settle a request whose pool is empty, as the full path would have.
+     * Dependencies only count when ranked ahead, because the full path only sees those.
+     */
+    private void denyExhausted(AllocationResult result, Map<String, AllocationResult> resultMap, RunRollup rollup) {
+        Request request = result.getRequest();
+        if (!constraintEngine.checkDependencies(request, result.getRank(), resultMap)) {
+            deferOnDependencies(result);
+        } else if (request.getCategory() == ResourceCategory.MONEY) {
+            result.setStatus(Request.RequestStatus.DENIED);
+            result.setAmountAllocated(BigDecimal.ZERO);
+            result.setReason("Budget exhausted");
+            result.addViolation(ConstraintViolation.BUDGET_EXHAUSTED);
+        } else {
+            result.setStatus(Request.RequestStatus.DENIED);
+            result.setQuantityAllocated(BigDecimal.ZERO);
+            result.setReason("Resource pool exhausted");
+            result.addViolation(ConstraintViolation.RESOURCE_EXHAUSTED);
+        }
+        resultMap.put(request.getId(), result);
+        rollup.record(result);
+    }
+
+    private void deferOnDependencies(AllocationResult result) {
+        result.setStatus(Request.RequestStatus.DEFERRED);
+        result.setReason("Dependencies not met");
+        result.addViolation(ConstraintViolation.DEPENDENCY_NOT_MET);
+    }
+
+    /**
+     * Weighted max-min fair shares. Requests are admitted in rank order while their minimum
+     * viable amount fits, which reserves that minimum for them. One water level per pool then
+     * raises every admitted request towards what it asked for, in proportion to its score,
+     * until the pool or one of its ancestors is spent. Without partial allocations the
+     * minimum is the full ask, so each request is funded in full or not at all.
+     */
+    private void allocateFairShares(
+        List<AllocationResult> rankedResults,
+        Map<String, AllocationResult> resultMap,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining,
+        AllocationRun run,
+        RunRollup rollup
+    ) {
+        // Budget pools keep their numbering in the tree, every other pool is a top-level node after them
+        Map<String, Integer> nodeByKey = new HashMap<>();
+        List<Integer> parents = new ArrayList<>();
+        List<BigDecimal> capacities = new ArrayList<>();
+        for (int node = 0; node < budgets.size(); node++) {
+            nodeByKey.put(budgets.key(node), node);
+            parents.add(budgets.parent(node));
+            capacities.add(budgets.headroom(node));
+        }
+
+        int size = rankedResults.size();
+        int[] admitted = new int[size];
+        int[] poolOf = new int[size];
+        BigDecimal[] floors = new BigDecimal[size];
+        int count = 0;
+        for (int position = 0; position < size; position++) {
+            AllocationResult result = rankedResults.get(position);
+            Request request = result.getRequest();
+            String key = poolKey(request);
+            int node = nodeByKey.computeIfAbsent(key, k -> {
+                parents.add(-1);
+                capacities.add(remaining(k, budgets, resourceRemaining));
+                return parents.size() - 1;
+            });
+
+            if (!constraintEngine.checkDependencies(request, result.getRank(), resultMap)) {
+                deferOnDependencies(result);
+                rollup.record(result);
             } else {
-                allocateResource(request, result, resourceRemaining, run);
+                BigDecimal least = leastViable(request, run);
+                BigDecimal remaining = remaining(key, budgets, resourceRemaining);
+                if (remaining.compareTo(least) >= 0) {
+                    draw(key, least, budgets, resourceRemaining);
+                    // Funded as far as dependents ranked below are concerned; the share is settled after the fill
+                    result.setStatus(Request.RequestStatus.APPROVED);
+                    admitted[count] = position;
+                    poolOf[count] = node;
+                    floors[count] = least;
+                    count++;
+                } else {
+                    denyBelowMinimum(result, remaining);
+                    rollup.record(result);
+                }
             }
-            
-            results.add(result);
             resultMap.put(request.getId(), result);
         }
+
+        double[] floor = new double[count];
+        double[] ceiling = new double[count];
+        double[] weight = new double[count];
+        for (int k = 0; k < count; k++) {
+            AllocationResult result = rankedResults.get(admitted[k]);
+            floor[k] = floors[k].doubleValue();
+            ceiling[k] = requestedOf(result.getRequest()).doubleValue();
+            weight[k] = result.getScore() != null ? result.getScore() : 0;
+        }
+        double[] shares = WaterFilling.shares(
+            parents.stream().mapToInt(Integer::intValue).toArray(),
+            capacities.stream().mapToDouble(BigDecimal::doubleValue).toArray(),
+            Arrays.copyOf(poolOf, count),
+            floor,
+            ceiling,
+            weight
+        );
+
+        // Shares are rounded down to the cent, so no pool is overdrawn, and the cents
+        // this leaves in a pool go to its requests with the largest remainders
+        BigDecimal[] allocated = new BigDecimal[count];
+        double[] remainders = new double[count];
+        for (int k = 0; k < count; k++) {
+            Request request = rankedResults.get(admitted[k]).getRequest();
+            String key = poolKey(request);
+            BigDecimal share = BigDecimal.valueOf(shares[k])
+                .setScale(2, RoundingMode.DOWN)
+                .max(floors[k])
+                .min(requestedOf(request));
+            BigDecimal extra = share.subtract(floors[k]).min(remaining(key, budgets, resourceRemaining));
+            draw(key, extra, budgets, resourceRemaining);
+            allocated[k] = floors[k].add(extra);
+            remainders[k] = shares[k] - allocated[k].doubleValue();
+        }
+        Integer[] byRemainder = new Integer[count];
+        for (int k = 0; k < count; k++) {
+            byRemainder[k] = k;
+        }
+        // Stable, so equal remainders go in rank order
+        Arrays.sort(byRemainder, (a, b) -> Double.compare(remainders[b], remainders[a]));
+        for (int k : byRemainder) {
+            if (remainders[k] < FAIR_SHARE_REMAINDER_EPSILON) {
+                break;
+            }
+            Request request = rankedResults.get(admitted[k]).getRequest();
+            String key = poolKey(request);
+            if (allocated[k].compareTo(requestedOf(request)) < 0
+                && remaining(key, budgets, resourceRemaining).compareTo(CENT) >= 0) {
+                draw(key, CENT, budgets, resourceRemaining);
+                allocated[k] = allocated[k].add(CENT);
+            }
+        }
+
+        for (int k = 0; k < count; k++) {
+            AllocationResult result = rankedResults.get(admitted[k]);
+            settleFairShare(result, allocated[k]);
+            rollup.record(result);
+        }
+    }
+
+    /**
+     * The least a request can be given: its minimum viable amount when partial allocations are allowed
+     */
+    private static BigDecimal leastViable(Request request, AllocationRun run) {
+        BigDecimal requested = requestedOf(request);
+        BigDecimal minimum = request.getCategory() == ResourceCategory.MONEY
+            ? request.getMinimumViableAllocation()
+            : request.getMinimumViableQuantity();
+        if (!run.isAllowPartialAllocations() || minimum == null) {
+            return requested;
+        }
+        return minimum.max(BigDecimal.ZERO).min(requested);
+    }
+
+    private static BigDecimal requestedOf(Request request) {
+        BigDecimal requested = request.getCategory() == ResourceCategory.MONEY
+            ? request.getAmountRequested()
+            : request.getQuantityRequested();
+        return requested != null ? requested : BigDecimal.ZERO;
+    }
+
+    private void settleFairShare(AllocationResult result, BigDecimal allocated) {
+        boolean monetary = result.getRequest().getCategory() == ResourceCategory.MONEY;
+        if (monetary) {
+            result.setAmountAllocated(allocated);
+        } else {
+            result.setQuantityAllocated(allocated);
+        }
+        if (allocated.compareTo(requestedOf(result.getRequest())) >= 0) {
+            result.setStatus(Request.RequestStatus.APPROVED);
+            result.setReason(monetary ? "Fully funded" : "Fully allocated");
+        } else {
+            result.setStatus(Request.RequestStatus.PARTIAL);
+            result.setReason(monetary ? "Fair share of the budget" : "Fair share of the resource pool");
+            result.addViolation(monetary ? ConstraintViolation.BUDGET_LIMITED : ConstraintViolation.RESOURCE_LIMITED);
+        }
+    }
+
+    private void denyBelowMinimum(AllocationResult result, BigDecimal remaining) {
+        boolean monetary = result.getRequest().getCategory() == ResourceCategory.MONEY;
+        result.setStatus(Request.RequestStatus.DENIED);
+        if (monetary) {
+            result.setAmountAllocated(BigDecimal.ZERO);
+        } else {
+            result.setQuantityAllocated(BigDecimal.ZERO);
+        }
+        if (remaining.signum() == 0) {
+            result.setReason(monetary ? "Budget exhausted" : "Resource pool exhausted");
+            result.addViolation(monetary ? ConstraintViolation.BUDGET_EXHAUSTED : ConstraintViolation.RESOURCE_EXHAUSTED);
+        } else {
+            result.setReason(monetary ? "Below minimum viable allocation" : "Below minimum viable quantity");
+            result.addViolation(ConstraintViolation.BELOW_MINIMUM_VIABLE);
+        }
+    }
+
+    /**
+     * Whether an empty pool necessarily denies this request. Zero-sized requests
+     * (or a zero minimum with partials allowed) still succeed against an empty pool.
+     */
+    private boolean deniedWhenExhausted(Request request, AllocationRun run) {
+        boolean monetary = request.getCategory() == ResourceCategory.MONEY;
+        BigDecimal requested = monetary ? request.getAmountRequested() : request.getQuantityRequested();
+        BigDecimal minimum = monetary ? request.getMinimumViableAllocation() : request.getMinimumViableQuantity();
         
-        return results;
+        if (requested == null || requested.signum() <= 0) {
+            return false;
+        }
+        return !(run.isAllowPartialAllocations() && minimum != null && minimum.signum() <= 0);
+    }
+
+    private static BigDecimal remaining(
+        String poolKey,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining
+    ) {
+        int node = budgets.node(poolKey);
+        return node >= 0 ? budgets.headroom(node) : resourceRemaining.getOrDefault(poolKey, BigDecimal.ZERO);
+    }
+
+    private static void draw(
+        String poolKey,
+        BigDecimal amount,
+        BudgetTree budgets,
+        Map<String, BigDecimal> resourceRemaining
+    ) {
+        if (amount.signum() == 0) {
+            return;
+        }
+        int node = budgets.node(poolKey);
+        if (node >= 0) {
+            budgets.draw(node, amount);
+        } else {
+            resourceRemaining.merge(poolKey, amount.negate(), BigDecimal::add);
+        }
     }
 
     private void allocateMonetary(
         Request request,
         AllocationResult result,
-        Map<String, BigDecimal> budgetRemaining,
+        BudgetTree budgets,
         AllocationRun run
     ) {
-        String key = request.getCategory().name();
-        BigDecimal remaining = budgetRemaining.getOrDefault(key, BigDecimal.ZERO);
+        // The tightest pool on the way to the root decides, and a draw comes out of every one of them
+        int pool = budgets.node(poolKey(request));
+        BigDecimal remaining = budgets.headroom(pool);
         BigDecimal requested = request.getAmountRequested();
         
         if (remaining.compareTo(requested) >= 0) {
@@ -163,7 +599,7 @@ public class AllocationEngine {
             result.setStatus(Request.RequestStatus.APPROVED);
             result.setAmountAllocated(requested);
             result.setReason("Fully funded");
-            budgetRemaining.put(key, remaining.subtract(requested));
+            budgets.draw(pool, requested);
         } else if (run.isAllowPartialAllocations() && 
                    request.getMinimumViableAllocation() != null &&
                    remaining.compareTo(request.getMinimumViableAllocation()) >= 0) {
@@ -171,18 +607,18 @@ public class AllocationEngine {
             result.setStatus(Request.RequestStatus.PARTIAL);
             result.setAmountAllocated(remaining);
             result.setReason("Partially funded - budget constraint");
-            result.getConstraintViolations().add("BUDGET_LIMITED");
-            budgetRemaining.put(key, BigDecimal.ZERO);
+            result.addViolation(ConstraintViolation.BUDGET_LIMITED);
+            budgets.draw(pool, remaining);
         } else {
             // Denied
             result.setStatus(Request.RequestStatus.DENIED);
             result.setAmountAllocated(BigDecimal.ZERO);
             if (remaining.compareTo(BigDecimal.ZERO) == 0) {
                 result.setReason("Budget exhausted");
-                result.getConstraintViolations().add("BUDGET_EXHAUSTED");
+                result.addViolation(ConstraintViolation.BUDGET_EXHAUSTED);
             } else {
                 result.setReason("Below minimum viable allocation");
-                result.getConstraintViolations().add("BELOW_MINIMUM_VIABLE");
+                result.addViolation(ConstraintViolation.BELOW_MINIMUM_VIABLE);
             }
         }
     }
@@ -193,7 +629,7 @@ public class AllocationEngine {
         Map<String, BigDecimal> resourceRemaining,
         AllocationRun run
     ) {
-        String key = request.getCategory().name() + ":" + request.getResourceType();
+        String key = poolKey(request);
         BigDecimal remaining = resourceRemaining.getOrDefault(key, BigDecimal.ZERO);
         BigDecimal requested = request.getQuantityRequested();
         
@@ -210,7 +646,7 @@ public class AllocationEngine {
             result.setStatus(Request.RequestStatus.PARTIAL);
             result.setQuantityAllocated(remaining);
             result.setReason("Partially allocated - resource constraint");
-            result.getConstraintViolations().add("RESOURCE_LIMITED");
+            result.addViolation(ConstraintViolation.RESOURCE_LIMITED);
             resourceRemaining.put(key, BigDecimal.ZERO);
         } else {
             // Denied
@@ -218,20 +654,35 @@ public class AllocationEngine {
             result.setQuantityAllocated(BigDecimal.ZERO);
             if (remaining.compareTo(BigDecimal.ZERO) == 0) {
                 result.setReason("Resource pool exhausted");
-                result.getConstraintViolations().add("RESOURCE_EXHAUSTED");
+                result.addViolation(ConstraintViolation.RESOURCE_EXHAUSTED);
             } else {
                 result.setReason("Below minimum viable quantity");
-                result.getConstraintViolations().add("BELOW_MINIMUM_VIABLE");
+                result.addViolation(ConstraintViolation.BELOW_MINIMUM_VIABLE);
             }
         }
     }
 
-    private Map<String, BigDecimal> initializeBudgetMap(AllocationCycle cycle) {
-        return cycle.getBudgetPools().stream()
-            .collect(Collectors.toMap(
-                pool -> pool.getCategory().name(),
-                BudgetPool::getTotalAmount
-            ));
+    /**
+     * Key of the pool a request draws from: the category for money, or its nested budget
+     * pool when it names one, and category and type otherwise
+     */
+    public static String poolKey(Request request) {
+        if (request.getCategory() == ResourceCategory.MONEY) {
+            return request.getBudgetPoolId() != null
+                ? BudgetTree.nestedKey(request.getCategory(), request.getBudgetPoolId())
+                : request.getCategory().name();
+        }
+        return request.getCategory().name() + ":" + request.getResourceType();
+    }
+
+    /**
+     * Key of the outermost pool a request draws from; requests with different keys never compete
+     */
+    static String rootPoolKey(Request request) {
+        if (request.getCategory() == ResourceCategory.MONEY) {
+            return request.getCategory().name();
+        }
+        return poolKey(request);
     }
 
     private Map<String, BigDecimal> initializeResourceMap(AllocationCycle cycle) {
@@ -242,50 +693,123 @@ public class AllocationEngine {
             ));
     }
 
-    private void generateExplanations(
+    private void explainInChunks(
         List<AllocationResult> results,
-        List<ScoredRequest> rankedRequests
-    ) {
-        for (int i = 0; i < results.size(); i++) {
-            AllocationResult result = results.get(i);
-            Request request = result.getRequest();
-            
-            DecisionExplanation explanation = DecisionExplanation.builder()
-                .result(result)
-                .scoreBreakdownJson(serializeScoreBreakdown(request))
-                .build();
-            
-            // Set reason based on status
-            switch (result.getStatus()) {
-                case APPROVED -> explanation.setReasonApproved(
-                    "Fully funded. Ranked #" + result.getRank() + " out of " + results.size()
-                );
-                case PARTIAL -> explanation.setReasonPartial(
-                    "Partially funded due to budget/resource constraints"
-                );
-                case DENIED -> explanation.setReasonDenied(
-                    "Not funded. " + result.getReason()
-                );
-                case DEFERRED -> explanation.setReasonDeferred(
-                    "Deferred. " + result.getReason()
-                );
+        AllocationCycle cycle,
+        BudgetTree budgets,
+        AllocationRun run,
+        LocalDate evaluationDate,
+        ScoringFormula formula,
+        ResultSink sink,
+        AtomicLong explainerCpu
+    ) throws InterruptedException {
+        Map<String, BigDecimal> capacities = budgets.effectiveCapacities();
+        capacities.putAll(initializeResourceMap(cycle));
+        // Remediations assume pools are filled greedily in rank order, which fair shares are not
+        RemediationPlanner planner = run.getAllocationMode() == AllocationRun.AllocationMode.FAIR_SHARE
+            ? null
+            : RemediationPlanner.of(results, capacities, run.isAllowPartialAllocations());
+        boolean parallel = runsInParallel(results.size());
+
+        // Bounded, so explanations waiting for the sink never exceed depth chunks
+        BlockingQueue<List<AllocationResult>> explained = new ArrayBlockingQueue<>(Math.max(1, pipelineDepth));
+        int chunkSize = Math.max(1, pipelineChunkSize);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread explainer = new Thread(() -> {
+            long cpuStart = threadCpuNanos();
+            try {
+                for (int from = 0; from < results.size(); from += chunkSize) {
+                    int to = Math.min(results.size(), from + chunkSize);
+                    IntStream indexes = IntStream.range(from, to);
+                    if (parallel) {
+                        indexes = indexes.parallel();
+                    }
+                    indexes.forEach(i -> explain(results, i, evaluationDate, formula,
+                        planner != null ? planner.remediation(i) : null));
+                    explained.put(results.subList(from, to));
+                }
+                explained.put(END_OF_RESULTS);
+            } catch (InterruptedException e) {
+                // The sink stopped taking chunks and already knows why
+            } catch (Throwable e) {
+                failure.set(e);
+                try {
+                    explained.put(END_OF_RESULTS);
+                } catch (InterruptedException stopped) {
+                    // The sink stopped taking chunks as well
+                }
+            } finally {
+                explainerCpu.set(threadCpuNanos() - cpuStart);
             }
-            
-            // Compare to next/previous request
-            if (i < results.size() - 1) {
-                AllocationResult nextResult = results.get(i + 1);
-                explanation.setComparedToRequestId(nextResult.getRequest().getId());
-                explanation.setComparedToRequestTitle(nextResult.getRequest().getTitle());
-                explanation.setComparedToScore(nextResult.getScore());
-                explanation.setScoreDifference(result.getScore() - nextResult.getScore());
+        }, "explain-" + run.getId());
+        explainer.setDaemon(true);
+        explainer.start();
+
+        try {
+            for (List<AllocationResult> chunk = explained.take(); chunk != END_OF_RESULTS; chunk = explained.take()) {
+                sink.accept(chunk);
             }
-            
-            result.setExplanation(explanation);
+        } finally {
+            explainer.interrupt();
+            explainer.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Explaining results failed: " + failure.get().getMessage(), failure.get());
+        }
+    }
+
+    private void explain(
+        List<AllocationResult> results,
+        int i,
+        LocalDate evaluationDate,
+        ScoringFormula formula,
+        RemediationPlanner.Remediation remediation
+    ) {
+        AllocationResult result = results.get(i);
+        Request request = result.getRequest();
+
+        DecisionExplanation explanation = DecisionExplanation.builder()
+            .result(result)
+            .scoreBreakdownJson(serializeScoreBreakdown(request, evaluationDate, formula))
+            .build();
+        if (remediation != null) {
+            explanation.setWhyThisLost(remediation.whyThisLost());
+            explanation.getWhatWouldChange().addAll(remediation.whatWouldChange());
+            explanation.setScoreNeeded(remediation.scoreNeeded());
+            explanation.setPoolIncreaseNeeded(remediation.poolIncreaseNeeded());
+            explanation.setLargestFundableAmount(remediation.largestFundableAmount());
         }
+
+        // Set reason based on status
+        switch (result.getStatus()) {
+            case APPROVED -> explanation.setReasonApproved(
+                "Fully funded. Ranked #" + result.getRank() + " out of " + results.size()
+            );
+            case PARTIAL -> explanation.setReasonPartial(
+                "Partially funded due to budget/resource constraints"
+            );
+            case DENIED -> explanation.setReasonDenied(
+                "Not funded. " + result.getReason()
+            );
+            case DEFERRED -> explanation.setReasonDeferred(
+                "Deferred. " + result.getReason()
+            );
+        }
+
+        // Compare to next/previous request
+        if (i < results.size() - 1) {
+            AllocationResult nextResult = results.get(i + 1);
+            explanation.setComparedToRequestId(nextResult.getRequest().getId());
+            explanation.setComparedToRequestTitle(nextResult.getRequest().getTitle());
+            explanation.setComparedToScore(nextResult.getScore());
+            explanation.setScoreDifference(result.getScore() - nextResult.getScore());
+        }
+
+        result.setExplanation(explanation);
     }
 
-    private String serializeScoreBreakdown(Request request) {
-        ScoringEngine.ScoreBreakdown breakdown = scoringEngine.calculateBreakdown(request);
+    private String serializeScoreBreakdown(Request request, LocalDate evaluationDate, ScoringFormula formula) {
+        ScoringEngine.ScoreBreakdown breakdown = scoringEngine.calculateBreakdown(request, evaluationDate, formula);
         // In production, use Jackson to serialize properly
         return String.format(
             "{\"totalScore\":%.2f,\"priority\":{\"value\":%.2f,\"contribution\":%.2f},\"urgency\":{\"value\":%.2f,\"contribution\":%.2f},\"impact\":{\"value\":%.2f,\"contribution\":%.2f},\"risk\":{\"value\":%.2f,\"contribution\":%.2f},\"strategic\":{\"value\":%.2f,\"contribution\":%.2f}}",
@@ -298,33 +822,73 @@ public class AllocationEngine {
         );
     }
 
-    private void calculateSummary(AllocationRun run, List<AllocationResult> results) {
-        long approved = results.stream()
-            .filter(r -> r.getStatus() == Request.RequestStatus.APPROVED)
-            .count();
-        long partial = results.stream()
-            .filter(r -> r.getStatus() == Request.RequestStatus.PARTIAL)
-            .count();
-        long deferred = results.stream()
-            .filter(r -> r.getStatus() == Request.RequestStatus.DEFERRED)
-            .count();
-        long denied = results.stream()
-            .filter(r -> r.getStatus() == Request.RequestStatus.DENIED)
-            .count();
+    private void calculateSummary(AllocationRun run, RunRollup rollup) {
+        // Counts and totals were accumulated while allocating, no pass over the results needed
+        run.setApprovedCount(rollup.count(Request.RequestStatus.APPROVED));
+        run.setPartialCount(rollup.count(Request.RequestStatus.PARTIAL));
+        run.setDeferredCount(rollup.count(Request.RequestStatus.DEFERRED));
+        run.setDeniedCount(rollup.count(Request.RequestStatus.DENIED));
+        run.setTotalAllocated(rollup.moneyAllocated());
+        run.setBudgetUtilization(rollup.moneyUtilization());
         
-        BigDecimal totalAllocated = results.stream()
-            .map(r -> r.getAmountAllocated() != null ? r.getAmountAllocated() : BigDecimal.ZERO)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        run.setApprovedCount((int) approved);
-        run.setPartialCount((int) partial);
-        run.setDeferredCount((int) deferred);
-        run.setDeniedCount((int) denied);
-        run.setTotalAllocated(totalAllocated);
-        
-        // Add results to run
-        results.forEach(run::addResult);
+        run.getPoolSummaries().clear();
+        rollup.toSummaries().forEach(run::addPoolSummary);
     }
 
     private record ScoredRequest(Request request, double score) {}
+
+    /**
+     * Splits a range of components until each task carries roughly one chunk of requests
+     */
+    private final class ComponentTask extends RecursiveAction {
+        private final List<List<AllocationResult>> components;
+        private final int from;
+        private final int to;
+        private final Map<String, AllocationResult> resultMap;
+        private final BudgetTree budgets;
+        private final Map<String, BigDecimal> resourceRemaining;
+        private final AllocationRun run;
+        private final RunRollup rollup;
+
+        ComponentTask(
+            List<List<AllocationResult>> components,
+            int from,
+            int to,
+            Map<String, AllocationResult> resultMap,
+            BudgetTree budgets,
+            Map<String, BigDecimal> resourceRemaining,
+            AllocationRun run,
+            RunRollup rollup
+        ) {
+            this.components = components;
+            this.from = from;
+            this.to = to;
+            this.resultMap = resultMap;
+            this.budgets = budgets;
+            this.resourceRemaining = resourceRemaining;
+            this.run = run;
+            this.rollup = rollup;
+        }
+
+        @Override
+        protected void compute() {
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                size += components.get(i).size();
+            }
+            
+            if (to - from == 1 || size <= parallelChunkSize) {
+                for (int i = from; i < to; i++) {
+                    allocateByMode(components.get(i), resultMap, budgets, resourceRemaining, run, rollup);
+                }
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                new ComponentTask(components, from, mid, resultMap, budgets, resourceRemaining, run, rollup),
+                new ComponentTask(components, mid, to, resultMap, budgets, resourceRemaining, run, rollup)
+            );
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.BudgetPool;
+import com.allocentra.domain.ResourceCategory;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * A cycle's budget pools as a tree, with the remaining amount of each while a run allocates.
+ *
+ * Nodes are numbered parents first and each keeps its own remaining amount and
+ * its parent's number. What a request can draw is the smallest remaining amount
+ * on the path from its pool to the root, found by walking at most depth nodes,
+ * and a draw is subtracted along that same path, so no subtree is ever summed
+ * again. Effective capacities, each pool's total capped by every ancestor's, are
+ * propagated down once when the tree is built.
+ *
+ * A top-level pool is keyed by its category, as flat pools always were; a nested
+ * pool by its category and id. Not thread-safe: all budget draws of a run happen
+ * in one allocation pass.
+ */
+public final class BudgetTree {
+
+    private static final String NESTED_SEPARATOR = "/";
+
+    private final Map<String, Integer> nodeByKey;
+    private final String[] keys;
+    private final int[] parent;
+    private final int[] depth;
+    private final BigDecimal[] capacity;
+    private final BigDecimal[] effectiveCapacity;
+    private final BigDecimal[] remaining;
+
+    private BudgetTree(List<BudgetPool> ordered) {
+        int size = ordered.size();
+        this.nodeByKey = new HashMap<>(size * 2);
+        this.keys = new String[size];
+        this.parent = new int[size];
+        this.depth = new int[size];
+        this.capacity = new BigDecimal[size];
+        this.effectiveCapacity = new BigDecimal[size];
+        this.remaining = new BigDecimal[size];
+
+        // Parents are matched by id, since a detached pool's parent may be a proxy rather than the pool itself
+        Map<String, Integer> nodeById = new HashMap<>(size * 2);
+        for (int node = 0; node < size; node++) {
+            BudgetPool pool = ordered.get(node);
+            String parentId = pool.parentIdForJson();
+            int up = parentId != null ? nodeById.getOrDefault(parentId, -1) : -1;
+            keys[node] = up >= 0 ? nestedKey(pool.getCategory(), pool.getId()) : pool.getCategory().name();
+            parent[node] = up;
+            depth[node] = up >= 0 ? depth[up] + 1 : 0;
+            capacity[node] = pool.getTotalAmount() != null ? pool.getTotalAmount() : BigDecimal.ZERO;
+            // Parents come first, so the parent's effective capacity is already final
+            effectiveCapacity[node] = up >= 0 ? capacity[node].min(effectiveCapacity[up]) : capacity[node];
+            remaining[node] = capacity[node];
+            if (pool.getId() != null) {
+                nodeById.put(pool.getId(), node);
+            }
+            if (nodeByKey.putIfAbsent(keys[node], node) != null) {
+                throw new IllegalStateException("More than one top-level " + keys[node] + " budget pool");
+            }
+        }
+    }
+
+    /**
+     * Tree of the given pools. Pools whose parent is not among them are treated as top-level.
+     */
+    public static BudgetTree of(List<BudgetPool> pools) {
+        Set<String> ids = new HashSet<>(pools.size() * 2);
+        for (BudgetPool pool : pools) {
+            if (pool.getId() != null) {
+                ids.add(pool.getId());
+            }
+        }
+        Map<String, List<BudgetPool>> children = new HashMap<>();
+        List<BudgetPool> roots = new ArrayList<>();
+        for (BudgetPool pool : pools) {
+            String parentId = pool.parentIdForJson();
+            if (parentId != null && ids.contains(parentId)) {
+                children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(pool);
+            } else {
+                roots.add(pool);
+            }
+        }
+
+        // Breadth-first from the roots numbers every parent before its children
+        List<BudgetPool> ordered = new ArrayList<>(pools.size());
+        ArrayDeque<BudgetPool> queue = new ArrayDeque<>(roots);
+        while (!queue.isEmpty()) {
+            BudgetPool pool = queue.poll();
+            ordered.add(pool);
+            if (pool.getId() != null) {
+                queue.addAll(children.getOrDefault(pool.getId(), List.of()));
+            }
+        }
+        if (ordered.size() != pools.size()) {
+            throw new IllegalStateException("Budget pools form a cycle");
+        }
+        return new BudgetTree(ordered);
+    }
+
+    public static String nestedKey(ResourceCategory category, String poolId) {
+        return category.name() + NESTED_SEPARATOR + poolId;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Node of a pool key, or -1 when the cycle has no such pool
+     */
+    public int node(String key) {
+        Integer node = nodeByKey.get(key);
+        return node != null ? node : -1;
+    }
+
+    public String key(int node) {
+        return keys[node];
+    }
+
+    /**
+     * Parent node, or -1 for a top-level pool
+     */
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int depth(int node) {
+        return depth[node];
+    }
+
+    public BigDecimal capacity(int node) {
+        return capacity[node];
+    }
+
+    /**
+     * The pool's total capped by every ancestor's: the most it could ever be given
+     */
+    public BigDecimal effectiveCapacity(int node) {
+        return effectiveCapacity[node];
+    }
+
+    /**
+     * Effective capacity of every pool by key, parents first
+     */
+    public Map<String, BigDecimal> effectiveCapacities() {
+        Map<String, BigDecimal> capacities = new LinkedHashMap<>(keys.length * 2);
+        for (int node = 0; node < keys.length; node++) {
+            capacities.put(keys[node], effectiveCapacity[node]);
+        }
+        return capacities;
+    }
+
+    /**
+     * What can still be drawn from a pool: the least remaining along its path to the root
+     */
+    public BigDecimal headroom(int node) {
+        if (node < 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal headroom = remaining[node];
+        for (int up = parent[node]; up >= 0; up = parent[up]) {
+            headroom = headroom.min(remaining[up]);
+        }
+        return headroom;
+    }
+
+    /**
+     * Draw an amount from a pool and every ancestor; the caller has checked the headroom
+     */
+    public void draw(int node, BigDecimal amount) {
+        for (int at = node; at >= 0; at = parent[at]) {
+            remaining[at] = remaining[at].subtract(amount);
+        }
+    }
+}
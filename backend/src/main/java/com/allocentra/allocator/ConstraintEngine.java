@@ -13,10 +13,12 @@ import java.util.Map;
 public class ConstraintEngine {
 
     /**
-     * Check if all dependencies of a request are satisfied
+     * Check if all dependencies of a request are satisfied.
+     * A dependency counts only when it was approved at a better rank than the request.
      */
     public boolean checkDependencies(
         Request request,
+        int rank,
         Map<String, AllocationResult> resultMap
     ) {
         if (request.getDependencies() == null || request.getDependencies().isEmpty()) {
@@ -26,8 +28,10 @@ public class ConstraintEngine {
         for (String dependencyId : request.getDependencies()) {
             AllocationResult depResult = resultMap.get(dependencyId);
             
-            // Dependency not yet processed or not approved
-            if (depResult == null || depResult.getStatus() != Request.RequestStatus.APPROVED) {
+            // Dependency not yet processed, ranked later, or not approved
+            if (depResult == null
+                || depResult.getRank() >= rank
+                || depResult.getStatus() != Request.RequestStatus.APPROVED) {
                 return false;
             }
         }
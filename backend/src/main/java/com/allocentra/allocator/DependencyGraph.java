@@ -0,0 +1,376 @@
+package com.allocentra.allocator;
+
+import java.util.*;
+
+/**
+ * A cycle's request dependencies with their transitive closure in both directions.
+ *
+ * Nodes are numbered as ids are first seen; a dependency on an id with no request in
+ * the cycle gets a node too, marked missing, so it can still be asked about. Direct
+ * edges are kept as one exact-size int array per node for "needs" and a growable one
+ * for "depended on by". The closures are bitsets over node numbers: what a node
+ * needs, directly or not, and what needs it. They are built together by condensing
+ * strongly connected components and sweeping them in topological order, so each set
+ * is the union of its neighbours' sets and members of a dependency loop share one.
+ *
+ * Adding edges updates the closures in place: every node that reaches the new edge's
+ * source gains everything its target reaches. Removing an edge, or adding one that
+ * closes a loop, only marks them stale until the next query rebuilds them. Past the
+ * closure limit no bitsets are kept and queries walk the edges instead. Not
+ * thread-safe; callers hold a lock around it.
+ */
+public final class DependencyGraph {
+
+    private static final int[] NONE = new int[0];
+
+    private final int closureLimit;
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final BitSet present = new BitSet();
+    private int[][] needs = new int[16][];
+    private int[][] neededBy = new int[16][];
+    private int[] neededByCount = new int[16];
+
+    private BitSet[] needsClosure;
+    private BitSet[] neededByClosure;
+    private boolean closureCurrent;
+
+    public DependencyGraph(int closureLimit) {
+        this.closureLimit = closureLimit;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Node of an id, or -1 when nothing in the cycle mentions it
+     */
+    public int node(String id) {
+        Integer node = nodeById.get(id);
+        return node != null ? node : -1;
+    }
+
+    public String id(int node) {
+        return ids.get(node);
+    }
+
+    /**
+     * Whether a request with the node's id is in the cycle, rather than only depended on
+     */
+    public boolean isPresent(int node) {
+        return present.get(node);
+    }
+
+    /**
+     * Record a request of the cycle and replace its direct dependencies
+     */
+    public void put(String id, Collection<String> dependencies) {
+        int node = nodeFor(id);
+        present.set(node);
+
+        int[] previous = needs[node];
+        int[] next = dependencies == null ? NONE : dependencies.stream()
+            .distinct()
+            .mapToInt(this::nodeFor)
+            .toArray();
+
+        Set<Integer> kept = new HashSet<>();
+        for (int dependency : next) {
+            kept.add(dependency);
+        }
+        boolean removed = false;
+        for (int dependency : previous) {
+            if (!kept.remove(dependency)) {
+                removeNeededBy(dependency, node);
+                removed = true;
+            }
+        }
+        needs[node] = next;
+        for (int dependency : kept) {
+            addNeededBy(dependency, node);
+        }
+
+        if (!closureCurrent) {
+            return;
+        }
+        if (removed) {
+            closureCurrent = false;
+            return;
+        }
+        for (int dependency : kept) {
+            if (!addToClosure(node, dependency)) {
+                closureCurrent = false;
+                return;
+            }
+        }
+    }
+
+    public int[] directNeeds(int node) {
+        return needs[node].clone();
+    }
+
+    public int[] directNeededBy(int node) {
+        return Arrays.copyOf(neededBy[node], neededByCount[node]);
+    }
+
+    /**
+     * Everything the node needs, directly or through other requests
+     */
+    public BitSet needs(int node) {
+        return reach(node, true);
+    }
+
+    /**
+     * Everything that needs the node, directly or through other requests: what is
+     * put at risk when it is denied or withdrawn
+     */
+    public BitSet neededBy(int node) {
+        return reach(node, false);
+    }
+
+    /**
+     * A dependency that would close a loop if the node depended on it, or -1 when none would
+     */
+    public int closesLoop(int node, Collection<String> dependencies) {
+        if (node < 0 || dependencies == null) {
+            return -1;
+        }
+        BitSet dependents = neededBy(node);
+        for (String id : dependencies) {
+            int dependency = node(id);
+            if (dependency == node || (dependency >= 0 && dependents.get(dependency))) {
+                return dependency;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether queries can be answered without rebuilding or walking the closures
+     */
+    public boolean isClosureCurrent() {
+        return closureCurrent || size() > closureLimit;
+    }
+
+    /**
+     * Rebuild the closures if edges were removed since they were built
+     */
+    public void refreshClosure() {
+        if (closureCurrent || size() > closureLimit) {
+            return;
+        }
+        buildClosure();
+        closureCurrent = true;
+    }
+
+    private BitSet reach(int node, boolean forward) {
+        if (size() > closureLimit) {
+            return walk(node, forward);
+        }
+        refreshClosure();
+        return (BitSet) (forward ? needsClosure[node] : neededByClosure[node]).clone();
+    }
+
+    private BitSet walk(int node, boolean forward) {
+        BitSet seen = new BitSet(size());
+        int[] queue = new int[size() + 1];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = node;
+        while (head < tail) {
+            int at = queue[head++];
+            int[] edges = forward ? needs[at] : neededBy[at];
+            int count = forward ? edges.length : neededByCount[at];
+            for (int i = 0; i < count; i++) {
+                int next = edges[i];
+                if (!seen.get(next)) {
+                    seen.set(next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Fold a new edge into current closures; false when it closes a loop
+     */
+    private boolean addToClosure(int node, int dependency) {
+        if (size() > closureLimit) {
+            return true;
+        }
+        if (dependency == node || needsClosure[dependency].get(node)) {
+            return false;
+        }
+        BitSet sources = (BitSet) neededByClosure[node].clone();
+        sources.set(node);
+        BitSet targets = (BitSet) needsClosure[dependency].clone();
+        targets.set(dependency);
+        for (int source = sources.nextSetBit(0); source >= 0; source = sources.nextSetBit(source + 1)) {
+            needsClosure[source].or(targets);
+        }
+        for (int target = targets.nextSetBit(0); target >= 0; target = targets.nextSetBit(target + 1)) {
+            neededByClosure[target].or(sources);
+        }
+        return true;
+    }
+
+    private void buildClosure() {
+        int n = size();
+        int[] component = new int[n];
+        List<int[]> components = components(component);
+
+        // Components come out with everything they need before them
+        int count = components.size();
+        BitSet[] needsOf = new BitSet[count];
+        for (int c = 0; c < count; c++) {
+            needsOf[c] = closureOf(components.get(c), component, c, needsOf, true);
+        }
+        BitSet[] neededByOf = new BitSet[count];
+        for (int c = count - 1; c >= 0; c--) {
+            neededByOf[c] = closureOf(components.get(c), component, c, neededByOf, false);
+        }
+
+        needsClosure = new BitSet[needs.length];
+        neededByClosure = new BitSet[needs.length];
+        for (int node = 0; node < n; node++) {
+            needsClosure[node] = needsOf[component[node]];
+            neededByClosure[node] = neededByOf[component[node]];
+        }
+    }
+
+    private BitSet closureOf(int[] members, int[] component, int self, BitSet[] done, boolean forward) {
+        BitSet closure = new BitSet();
+        for (int member : members) {
+            int[] edges = forward ? needs[member] : neededBy[member];
+            int count = forward ? edges.length : neededByCount[member];
+            for (int i = 0; i < count; i++) {
+                int next = edges[i];
+                closure.set(next);
+                if (component[next] != self) {
+                    closure.or(done[component[next]]);
+                }
+            }
+        }
+        if (members.length > 1) {
+            for (int member : members) {
+                closure.set(member);
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Strongly connected components over "needs" edges, by Tarjan's algorithm without
+     * recursion, in the order they complete: every component after those it needs
+     */
+    private List<int[]> components(int[] component) {
+        int n = size();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] edge = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] calls = new int[n];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int stackSize = 0;
+        List<int[]> components = new ArrayList<>();
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            calls[depth++] = root;
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int node = calls[depth - 1];
+                if (edge[node] < needs[node].length) {
+                    int next = needs[node][edge[node]++];
+                    if (index[next] < 0) {
+                        index[next] = low[next] = counter++;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        calls[depth++] = next;
+                    } else if (onStack[next]) {
+                        low[node] = Math.min(low[node], index[next]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    int caller = calls[depth - 1];
+                    low[caller] = Math.min(low[caller], low[node]);
+                }
+                if (low[node] == index[node]) {
+                    int start = stackSize;
+                    do {
+                        start--;
+                    } while (stack[start] != node);
+                    int[] members = Arrays.copyOfRange(stack, start, stackSize);
+                    for (int member : members) {
+                        onStack[member] = false;
+                        component[member] = components.size();
+                    }
+                    stackSize = start;
+                    components.add(members);
+                }
+            }
+        }
+        return components;
+    }
+
+    private int nodeFor(String id) {
+        Integer existing = nodeById.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int node = ids.size();
+        nodeById.put(id, node);
+        ids.add(id);
+        if (node == needs.length) {
+            int capacity = node * 2;
+            needs = Arrays.copyOf(needs, capacity);
+            neededBy = Arrays.copyOf(neededBy, capacity);
+            neededByCount = Arrays.copyOf(neededByCount, capacity);
+            if (needsClosure != null) {
+                needsClosure = Arrays.copyOf(needsClosure, capacity);
+                neededByClosure = Arrays.copyOf(neededByClosure, capacity);
+            }
+        }
+        needs[node] = NONE;
+        neededBy[node] = NONE;
+        if (needsClosure != null) {
+            needsClosure[node] = new BitSet();
+            neededByClosure[node] = new BitSet();
+        }
+        return node;
+    }
+
+    private void addNeededBy(int node, int dependent) {
+        int count = neededByCount[node];
+        if (count == neededBy[node].length) {
+            neededBy[node] = Arrays.copyOf(neededBy[node], Math.max(4, count * 2));
+        }
+        neededBy[node][count] = dependent;
+        neededByCount[node] = count + 1;
+    }
+
+    private void removeNeededBy(int node, int dependent) {
+        int[] edges = neededBy[node];
+        int count = neededByCount[node];
+        for (int i = 0; i < count; i++) {
+            if (edges[i] == dependent) {
+                edges[i] = edges[count - 1];
+                neededByCount[node] = count - 1;
+                return;
+            }
+        }
+    }
+}
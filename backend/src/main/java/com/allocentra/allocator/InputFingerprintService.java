@@ -0,0 +1,198 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.*;
+import com.allocentra.repository.AllocationCycleRepository;
+import com.allocentra.repository.RequestRepository;
+import com.allocentra.scoring.ScoringEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fingerprints the allocation-relevant inputs of cycles and runs.
+ *
+ * A cycle fingerprint is the wrapping sum of one hash per pool, per request and
+ * for a custom scoring formula, so an edit only needs to subtract the old hash
+ * and add the new one.
+ * A run fingerprint adds everything else the engine reads: options, evaluation
+ * date, scoring weights and engine version. Equal run fingerprints mean equal results.
+ */
+@Service
+@RequiredArgsConstructor
+public class InputFingerprintService {
+
+    private final AllocationCycleRepository cycleRepository;
+    private final RequestRepository requestRepository;
+    private final ScoringEngine scoringEngine;
+
+    /**
+     * Save a new or edited request and fold the change into its cycle's fingerprint
+     */
+    @Transactional
+    public Request saveRequest(Request request) {
+        Long previousHash = request.getId() != null
+            ? requestRepository.findInputHashById(request.getId())
+            : null;
+
+        // The id is part of the hash because dependencies refer to it
+        Request saved = requestRepository.save(request);
+        saved.setInputHash(hash(saved));
+
+        AllocationCycle cycle = cycleRepository.findByIdForUpdate(saved.getCycle().getId())
+            .orElseThrow(() -> new RuntimeException("Cycle not found"));
+        if (cycle.getInputFingerprint() != null) {
+            long previous = previousHash != null ? previousHash : 0L;
+            cycle.setInputFingerprint(cycle.getInputFingerprint() - previous + saved.getInputHash());
+        }
+        return saved;
+    }
+
+    /**
+     * Replace a cycle's scoring formula and fold the change into its fingerprint
+     */
+    @Transactional
+    public AllocationCycle saveScoringFormula(String cycleId, String formula) {
+        AllocationCycle cycle = cycleRepository.findByIdForUpdate(cycleId)
+            .orElseThrow(() -> new RuntimeException("Cycle not found"));
+        String normalized = formula == null || formula.isBlank() ? null : formula;
+        if (cycle.getInputFingerprint() != null) {
+            cycle.setInputFingerprint(cycle.getInputFingerprint()
+                - formulaHash(cycle.getScoringFormula()) + formulaHash(normalized));
+        }
+        cycle.setScoringFormula(normalized);
+        return cycle;
+    }
+
+    /**
+     * Fingerprint of everything a run of this cycle would read
+     */
+    @Transactional
+    public long runFingerprint(AllocationCycle cycle, AllocationRun run) {
+        String[] parts = {
+            Long.toString(cycleFingerprint(cycle.getId())),
+            String.valueOf(run.getEvaluationDate()),
+            Boolean.toString(run.isAllowPartialAllocations()),
+            String.valueOf(run.getCategoryCapsJson()),
+            run.getEngineVersion(),
+            scoringEngine.getWeightsSignature()
+        };
+        // Greedy runs keep the fingerprints they had before allocation modes existed
+        if (run.getAllocationMode() != AllocationRun.AllocationMode.GREEDY) {
+            parts = Arrays.copyOf(parts, parts.length + 1);
+            parts[parts.length - 1] = run.getAllocationMode().name();
+        }
+        return digest(parts);
+    }
+
+    /**
+     * Fingerprint of a cycle snapshot: the cycle inputs plus what its scores depend on
+     */
+    @Transactional
+    public long snapshotFingerprint(String cycleId, LocalDate evaluationDate) {
+        return digest(
+            Long.toString(cycleFingerprint(cycleId)),
+            String.valueOf(evaluationDate),
+            scoringEngine.getWeightsSignature()
+        );
+    }
+
+    /**
+     * Current cycle fingerprint, computed from scratch the first time it is needed
+     */
+    @Transactional
+    public long cycleFingerprint(String cycleId) {
+        AllocationCycle cycle = cycleRepository.findByIdForUpdate(cycleId)
+            .orElseThrow(() -> new RuntimeException("Cycle not found"));
+        if (cycle.getInputFingerprint() != null) {
+            return cycle.getInputFingerprint();
+        }
+
+        long fingerprint = 0L;
+        for (BudgetPool pool : cycle.getBudgetPools()) {
+            // Top-level pools keep the hash they had before pools could nest
+            fingerprint += pool.parentIdForJson() == null
+                ? digest("budget", pool.getCategory().name(), amount(pool.getTotalAmount()))
+                : digest("budget", pool.getCategory().name(), amount(pool.getTotalAmount()),
+                    pool.getId(), pool.parentIdForJson());
+        }
+        for (ResourcePool pool : cycle.getResourcePools()) {
+            fingerprint += digest("resource", pool.getCategory().name(), pool.getResourceType(),
+                amount(pool.getTotalQuantity()));
+        }
+        fingerprint += formulaHash(cycle.getScoringFormula());
+        for (Request request : requestRepository.findByCycleId(cycleId)) {
+            if (request.getInputHash() == null) {
+                request.setInputHash(hash(request));
+            }
+            fingerprint += request.getInputHash();
+        }
+
+        cycle.setInputFingerprint(fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Hash of the request fields the scoring and allocation engines read
+     */
+    public long hash(Request request) {
+        List<String> dependencies = request.getDependencies() == null
+            ? List.of()
+            : request.getDependencies().stream().sorted().toList();
+
+        String[] parts = {
+            "request",
+            request.getId(),
+            String.valueOf(request.getCategory()),
+            amount(request.getAmountRequested()),
+            amount(request.getMinimumViableAllocation()),
+            String.valueOf(request.getResourceType()),
+            amount(request.getQuantityRequested()),
+            amount(request.getMinimumViableQuantity()),
+            String.valueOf(request.getPriority()),
+            String.valueOf(request.getUrgencyDeadline()),
+            String.valueOf(request.getImpact()),
+            String.valueOf(request.getRisk()),
+            String.valueOf(request.getStrategic()),
+            String.join(",", dependencies)
+        };
+        // Requests drawing on the top-level pool keep the hash they had before pools could nest
+        if (request.getBudgetPoolId() != null) {
+            parts = Arrays.copyOf(parts, parts.length + 1);
+            parts[parts.length - 1] = request.getBudgetPoolId();
+        }
+        return digest(parts);
+    }
+
+    private static long formulaHash(String formula) {
+        // Cycles on the built-in formula keep the fingerprints they had before formulas existed
+        return formula == null ? 0L : digest("formula", formula);
+    }
+
+    private static String amount(BigDecimal value) {
+        // 100 and 100.00 must hash alike
+        return value == null ? "null" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private static long digest(String... parts) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (String part : parts) {
+            sha256.update(part.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+        }
+        return ByteBuffer.wrap(sha256.digest()).getLong();
+    }
+}
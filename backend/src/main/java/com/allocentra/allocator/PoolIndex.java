@@ -0,0 +1,62 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.AllocationResult;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Positions of ranked results grouped by the pool they draw from.
+ *
+ * Pools are numbered in order of first appearance and each pool's positions are
+ * stored contiguously in rank order (compressed rows), so the pending tail of a
+ * pool is a slice of {@link #positions} rather than a scan of the whole ranking.
+ */
+final class PoolIndex {
+
+    final String[] keys;
+    final int[] poolOf;
+    final int[] start;
+    final int[] positions;
+
+    private PoolIndex(String[] keys, int[] poolOf, int[] start, int[] positions) {
+        this.keys = keys;
+        this.poolOf = poolOf;
+        this.start = start;
+        this.positions = positions;
+    }
+
+    static PoolIndex of(List<AllocationResult> rankedResults) {
+        int size = rankedResults.size();
+        int[] poolOf = new int[size];
+        Map<String, Integer> idByKey = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = AllocationEngine.poolKey(rankedResults.get(i).getRequest());
+            poolOf[i] = idByKey.computeIfAbsent(key, k -> idByKey.size());
+        }
+
+        String[] keys = new String[idByKey.size()];
+        idByKey.forEach((key, id) -> keys[id] = key);
+
+        int[] start = new int[keys.length + 1];
+        for (int pool : poolOf) {
+            start[pool + 1]++;
+        }
+        for (int p = 0; p < keys.length; p++) {
+            start[p + 1] += start[p];
+        }
+
+        int[] fill = start.clone();
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[fill[poolOf[i]]++] = i;
+        }
+
+        return new PoolIndex(keys, poolOf, start, positions);
+    }
+
+    int poolCount() {
+        return keys.length;
+    }
+}
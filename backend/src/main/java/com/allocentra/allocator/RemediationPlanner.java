@@ -0,0 +1,277 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.AllocationResult;
+import com.allocentra.domain.Request;
+import com.allocentra.domain.ResourceCategory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out, for every request that lost something, what would have changed the outcome.
+ *
+ * One pass over each pool's requests in rank order builds prefix sums of what was
+ * allocated and of what was asked for ahead of each position. Because allocation
+ * is greedy, inserting a request at a position leaves everything ahead of it as it
+ * was, so the amount it would get there is the capacity minus the allocated prefix.
+ * The lowest position where it would be funded is then a binary search over the
+ * prefix, and the score it must beat is the score of the request at that position.
+ * The sums are built once; each result's remediation is worked out when it is
+ * explained, so only the results being explained hold remediation text.
+ */
+final class RemediationPlanner {
+
+    private final List<AllocationResult> rankedResults;
+    private final boolean allowPartial;
+    private final Map<String, AllocationResult> byRequestId;
+    private final PoolIndex pools;
+    private final int[] indexInPool;
+    private final BigDecimal[] capacities;
+    private final int[] exhaustedAt;
+
+    // allocatedAhead[p][j] and demandAhead[p][j] cover pool p's requests ranked before its j-th
+    private final BigDecimal[][] allocatedAhead;
+    private final BigDecimal[][] demandAhead;
+
+    private RemediationPlanner(
+        List<AllocationResult> rankedResults,
+        Map<String, BigDecimal> capacities,
+        boolean allowPartial
+    ) {
+        this.rankedResults = rankedResults;
+        this.allowPartial = allowPartial;
+        this.byRequestId = new HashMap<>(rankedResults.size() * 2);
+        for (AllocationResult result : rankedResults) {
+            byRequestId.put(result.getRequest().getId(), result);
+        }
+
+        this.pools = PoolIndex.of(rankedResults);
+        int poolCount = pools.poolCount();
+        this.indexInPool = new int[rankedResults.size()];
+        this.capacities = new BigDecimal[poolCount];
+        this.exhaustedAt = new int[poolCount];
+        this.allocatedAhead = new BigDecimal[poolCount][];
+        this.demandAhead = new BigDecimal[poolCount][];
+
+        for (int p = 0; p < poolCount; p++) {
+            int from = pools.start[p];
+            int size = pools.start[p + 1] - from;
+            for (int j = 0; j < size; j++) {
+                indexInPool[pools.positions[from + j]] = j;
+            }
+            this.capacities[p] = capacities.getOrDefault(pools.keys[p], BigDecimal.ZERO);
+            this.exhaustedAt[p] = -1;
+            if (anyShortfall(from, size)) {
+                sumAhead(p, from, size);
+            }
+        }
+    }
+
+    /**
+     * Build the prefix sums of every pool that has a request which lost something
+     */
+    static RemediationPlanner of(
+        List<AllocationResult> rankedResults,
+        Map<String, BigDecimal> capacities,
+        boolean allowPartial
+    ) {
+        return new RemediationPlanner(rankedResults, capacities, allowPartial);
+    }
+
+    /**
+     * Remediation for the result at a rank position; null when it got everything it asked for
+     */
+    Remediation remediation(int position) {
+        AllocationResult result = rankedResults.get(position);
+        return switch (result.getStatus()) {
+            case DENIED, PARTIAL -> poolShortfall(pools.poolOf[position], indexInPool[position]);
+            case DEFERRED -> unmetDependencies(result);
+            default -> null;
+        };
+    }
+
+    private void sumAhead(int pool, int from, int size) {
+        BigDecimal capacity = capacities[pool];
+        BigDecimal[] allocated = new BigDecimal[size + 1];
+        BigDecimal[] demand = new BigDecimal[size + 1];
+        allocated[0] = BigDecimal.ZERO;
+        demand[0] = BigDecimal.ZERO;
+        for (int j = 0; j < size; j++) {
+            AllocationResult result = rankedResults.get(pools.positions[from + j]);
+            allocated[j + 1] = allocated[j].add(allocated(result));
+            // Deferred requests stay deferred whatever the pool holds, so they are not demand
+            demand[j + 1] = result.getStatus() == Request.RequestStatus.DEFERRED
+                ? demand[j]
+                : demand[j].add(requested(result.getRequest()));
+            if (exhaustedAt[pool] < 0 && capacity.signum() > 0 && allocated[j + 1].compareTo(capacity) >= 0) {
+                exhaustedAt[pool] = j;
+            }
+        }
+        allocatedAhead[pool] = allocated;
+        demandAhead[pool] = demand;
+    }
+
+    private boolean anyShortfall(int from, int size) {
+        for (int j = 0; j < size; j++) {
+            if (rankedResults.get(pools.positions[from + j]).getStatus() != Request.RequestStatus.APPROVED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Remediation poolShortfall(int pool, int j) {
+        BigDecimal capacity = capacities[pool];
+        BigDecimal[] allocatedAhead = this.allocatedAhead[pool];
+        BigDecimal[] demandAhead = this.demandAhead[pool];
+        int exhaustedAt = this.exhaustedAt[pool];
+        String key = pools.keys[pool];
+        AllocationResult result = rankedResults.get(pools.positions[pools.start[pool] + j]);
+        Request request = result.getRequest();
+        BigDecimal requested = requested(request);
+        BigDecimal minimum = allowPartial ? minimum(request) : null;
+        BigDecimal left = capacity.subtract(allocatedAhead[j]).max(BigDecimal.ZERO);
+        List<String> changes = new ArrayList<>();
+
+        if (capacity.signum() == 0) {
+            changes.add("Add a " + key + " pool of at least " + amount(requested));
+            return new Remediation("The cycle has no " + key + " pool", changes, null, requested, null);
+        }
+
+        String whyThisLost;
+        if (left.signum() == 0 && exhaustedAt >= 0) {
+            AllocationResult last = rankedResults.get(pools.positions[pools.start[pool] + exhaustedAt]);
+            whyThisLost = "The " + key + " pool ran out at rank #" + last.getRank()
+                + " (score " + score(last.getScore()) + "); this request ranked #" + result.getRank()
+                + " with score " + score(result.getScore());
+        } else if (result.getStatus() == Request.RequestStatus.PARTIAL || minimum == null) {
+            whyThisLost = "Only " + amount(left) + " of the " + key + " pool was left at rank #"
+                + result.getRank() + ", short of the " + amount(requested) + " requested";
+        } else {
+            whyThisLost = "Only " + amount(left) + " of the " + key + " pool was left at rank #"
+                + result.getRank() + ", below the minimum viable " + amount(minimum);
+        }
+
+        // Moving up leaves everyone ahead unchanged, so the lowest insertion point that fits is exact
+        Double scoreNeeded = null;
+        int fullAt = lastPositionFitting(allocatedAhead, j, capacity.subtract(requested));
+        if (fullAt < 0) {
+            changes.add("No score is enough: " + amount(requested) + " exceeds the whole " + key
+                + " pool of " + amount(capacity));
+        } else if (fullAt < j) {
+            scoreNeeded = rankedResults.get(pools.positions[pools.start[pool] + fullAt]).getScore();
+            changes.add("A score above " + score(scoreNeeded) + " (currently " + score(result.getScore())
+                + ") would fund it in full");
+        }
+        if (result.getStatus() == Request.RequestStatus.DENIED && minimum != null && minimum.signum() > 0) {
+            int minimumAt = lastPositionFitting(allocatedAhead, j, capacity.subtract(minimum));
+            if (minimumAt >= 0 && minimumAt < j && minimumAt != fullAt) {
+                changes.add("A score above " + score(rankedResults.get(pools.positions[pools.start[pool] + minimumAt])
+                    .getScore()) + " would fund at least the minimum viable " + amount(minimum));
+            }
+        }
+
+        // With more capacity the requests ahead absorb it first, up to what they asked for
+        BigDecimal increase = demandAhead[j].add(requested).subtract(capacity).max(BigDecimal.ZERO);
+        if (increase.signum() > 0) {
+            changes.add("Adding " + amount(increase) + " to the " + key + " pool would fund it in full");
+        }
+
+        BigDecimal largestFundable = left.signum() > 0 ? left : null;
+        if (largestFundable != null) {
+            changes.add("Requesting " + amount(largestFundable) + " or less would be funded in full");
+        }
+
+        return new Remediation(whyThisLost, changes, scoreNeeded,
+            increase.signum() > 0 ? increase : null, largestFundable);
+    }
+
+    private Remediation unmetDependencies(AllocationResult result) {
+        List<String> blockers = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        for (String dependencyId : result.getRequest().getDependencies()) {
+            AllocationResult dependency = byRequestId.get(dependencyId);
+            if (dependency == null) {
+                blockers.add(dependencyId + " is not in this cycle");
+                changes.add("Remove the dependency on " + dependencyId);
+            } else if (dependency.getRank() >= result.getRank()) {
+                blockers.add("\"" + dependency.getRequest().getTitle() + "\" ranks below it (#" + dependency.getRank() + ")");
+                changes.add("Rank \"" + dependency.getRequest().getTitle() + "\" above this request (score above "
+                    + score(result.getScore()) + ")");
+            } else if (dependency.getStatus() != Request.RequestStatus.APPROVED) {
+                blockers.add("\"" + dependency.getRequest().getTitle() + "\" was " + dependency.getStatus());
+                changes.add("Fund \"" + dependency.getRequest().getTitle() + "\" in full");
+            }
+        }
+        if (blockers.isEmpty()) {
+            return null;
+        }
+        return new Remediation("Depends on " + String.join(", ", blockers), changes, null, null, null);
+    }
+
+    /**
+     * Highest j' in [0, j] whose allocated prefix is at most {@code limit}, or -1
+     */
+    private static int lastPositionFitting(BigDecimal[] allocatedAhead, int j, BigDecimal limit) {
+        if (limit.signum() < 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = j;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (allocatedAhead[mid].compareTo(limit) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static BigDecimal allocated(AllocationResult result) {
+        BigDecimal allocated = result.getRequest().getCategory() == ResourceCategory.MONEY
+            ? result.getAmountAllocated()
+            : result.getQuantityAllocated();
+        return allocated != null ? allocated : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal requested(Request request) {
+        BigDecimal requested = request.getCategory() == ResourceCategory.MONEY
+            ? request.getAmountRequested()
+            : request.getQuantityRequested();
+        return requested != null ? requested : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal minimum(Request request) {
+        return request.getCategory() == ResourceCategory.MONEY
+            ? request.getMinimumViableAllocation()
+            : request.getMinimumViableQuantity();
+    }
+
+    private static String amount(BigDecimal value) {
+        return value == null ? "none" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private static String score(double score) {
+        return BigDecimal.valueOf(score).setScale(3, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    /**
+     * What held a request back and what would have changed it
+     */
+    record Remediation(
+        String whyThisLost,
+        List<String> whatWouldChange,
+        Double scoreNeeded,
+        BigDecimal poolIncreaseNeeded,
+        BigDecimal largestFundableAmount
+    ) {
+    }
+}
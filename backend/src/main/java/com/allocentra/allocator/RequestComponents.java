@@ -0,0 +1,91 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.AllocationResult;
+import com.allocentra.domain.Request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a ranked cycle into components that cannot influence each other.
+ *
+ * Two requests interact only when they draw from the same pool or when one
+ * depends on the other, so components are the connected sets of a union-find
+ * over pool keys and dependency edges. Each component keeps the global rank order.
+ */
+final class RequestComponents {
+
+    private RequestComponents() {
+    }
+
+    static List<List<AllocationResult>> partition(List<AllocationResult> rankedResults) {
+        int size = rankedResults.size();
+        int[] parent = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+
+        Map<String, Integer> indexById = new HashMap<>(size * 2);
+        Map<String, Integer> firstByPool = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Request request = rankedResults.get(i).getRequest();
+            indexById.put(request.getId(), i);
+
+            Integer first = firstByPool.putIfAbsent(AllocationEngine.rootPoolKey(request), i);
+            if (first != null) {
+                union(parent, first, i);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            List<String> dependencies = rankedResults.get(i).getRequest().getDependencies();
+            if (dependencies == null) {
+                continue;
+            }
+            for (String dependencyId : dependencies) {
+                // Dependencies outside the cycle never resolve, in either mode
+                Integer dependency = indexById.get(dependencyId);
+                if (dependency != null) {
+                    union(parent, dependency, i);
+                }
+            }
+        }
+
+        // Walking in rank order keeps each component sorted by rank
+        Map<Integer, List<AllocationResult>> byRoot = new HashMap<>();
+        List<List<AllocationResult>> components = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            List<AllocationResult> component = byRoot.computeIfAbsent(find(parent, i), root -> {
+                List<AllocationResult> created = new ArrayList<>();
+                components.add(created);
+                return created;
+            });
+            component.add(rankedResults.get(i));
+        }
+
+        return components;
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            // Lower index wins so roots stay stable across runs
+            if (rootA < rootB) {
+                parent[rootB] = rootA;
+            } else {
+                parent[rootA] = rootB;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.AllocationResult;
+
+import java.util.List;
+
+/**
+ * Takes explained results from the engine, a chunk of consecutive ranks at a time
+ */
+@FunctionalInterface
+public interface ResultSink {
+
+    /**
+     * Called on the thread running the allocation, in rank order. The sink may drop a chunk's
+     * explanations once it is done with them; scores, ranks and statuses must stay as they are.
+     */
+    void accept(List<AllocationResult> chunk);
+}
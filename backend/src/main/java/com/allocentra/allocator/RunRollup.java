@@ -0,0 +1,181 @@
+package com.allocentra.allocator;
+
+import com.allocentra.domain.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Running per-pool totals of a run, filled in as the allocation loop settles each request.
+ *
+ * Every pool gets its tally before allocation starts and is only written by the
+ * pass that owns the pool, so parallel components can record without locking.
+ * Category rollups and run-level counts are derived from the pool tallies at the end.
+ *
+ * A nested budget pool's tally covers its whole subtree: an outcome is added to
+ * the pool's tally and each ancestor's, so the rollups stay current without
+ * summing subtrees afterwards. Category and run totals count top-level pools only.
+ */
+final class RunRollup {
+
+    private final Map<String, Tally> tallies = new LinkedHashMap<>();
+
+    RunRollup(AllocationCycle cycle, BudgetTree budgets) {
+        Tally[] nodes = new Tally[budgets.size()];
+        for (int node = 0; node < budgets.size(); node++) {
+            Tally tally = tally(budgets.key(node), ResourceCategory.MONEY, null);
+            tally.capacity = budgets.capacity(node);
+            // Parents come first in the tree, so the parent's tally already exists
+            tally.parent = budgets.parent(node) >= 0 ? nodes[budgets.parent(node)] : null;
+            nodes[node] = tally;
+        }
+        for (ResourcePool pool : cycle.getResourcePools()) {
+            tally(pool.getCategory().name() + ":" + pool.getResourceType(), pool.getCategory(), pool.getResourceType())
+                .capacity = pool.getTotalQuantity();
+        }
+    }
+
+    /**
+     * Register a request before allocation starts; not thread-safe
+     */
+    void expect(Request request) {
+        boolean monetary = request.getCategory() == ResourceCategory.MONEY;
+        Tally tally = tally(AllocationEngine.poolKey(request), request.getCategory(),
+            monetary ? null : request.getResourceType());
+        BigDecimal requested = orZero(monetary ? request.getAmountRequested() : request.getQuantityRequested());
+        for (Tally at = tally; at != null; at = at.parent) {
+            at.requested = at.requested.add(requested);
+            at.requests++;
+        }
+    }
+
+    /**
+     * Record the final outcome of a request
+     */
+    void record(AllocationResult result) {
+        Request request = result.getRequest();
+        BigDecimal allocated = orZero(request.getCategory() == ResourceCategory.MONEY
+            ? result.getAmountAllocated()
+            : result.getQuantityAllocated());
+
+        for (Tally tally = tallies.get(AllocationEngine.poolKey(request)); tally != null; tally = tally.parent) {
+            tally.allocated = tally.allocated.add(allocated);
+            switch (result.getStatus()) {
+                case APPROVED -> tally.approved++;
+                case PARTIAL -> tally.partial++;
+                case DEFERRED -> tally.deferred++;
+                case DENIED -> tally.denied++;
+                default -> { }
+            }
+        }
+    }
+
+    int count(Request.RequestStatus status) {
+        int count = 0;
+        for (Tally tally : tallies.values()) {
+            if (tally.parent != null) {
+                continue;
+            }
+            count += switch (status) {
+                case APPROVED -> tally.approved;
+                case PARTIAL -> tally.partial;
+                case DEFERRED -> tally.deferred;
+                case DENIED -> tally.denied;
+                default -> 0;
+            };
+        }
+        return count;
+    }
+
+    BigDecimal moneyAllocated() {
+        Tally money = tallies.get(ResourceCategory.MONEY.name());
+        return money != null ? money.allocated : BigDecimal.ZERO;
+    }
+
+    Double moneyUtilization() {
+        Tally money = tallies.get(ResourceCategory.MONEY.name());
+        return money != null ? utilization(money.allocated, money.capacity) : null;
+    }
+
+    /**
+     * One row per pool followed by one row per category
+     */
+    List<RunPoolSummary> toSummaries() {
+        List<RunPoolSummary> summaries = new ArrayList<>();
+        Map<ResourceCategory, Tally> byCategory = new EnumMap<>(ResourceCategory.class);
+
+        tallies.forEach((key, tally) -> {
+            summaries.add(tally.toSummary(RunPoolSummary.Scope.POOL, key));
+            if (tally.parent != null) {
+                return;
+            }
+
+            Tally category = byCategory.computeIfAbsent(tally.category, c -> new Tally(c, null));
+            category.capacity = category.capacity.add(tally.capacity);
+            category.requested = category.requested.add(tally.requested);
+            category.allocated = category.allocated.add(tally.allocated);
+            category.requests += tally.requests;
+            category.approved += tally.approved;
+            category.partial += tally.partial;
+            category.deferred += tally.deferred;
+            category.denied += tally.denied;
+        });
+
+        byCategory.forEach((category, tally) ->
+            summaries.add(tally.toSummary(RunPoolSummary.Scope.CATEGORY, category.name())));
+        return summaries;
+    }
+
+    private Tally tally(String key, ResourceCategory category, String resourceType) {
+        return tallies.computeIfAbsent(key, k -> new Tally(category, resourceType));
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static Double utilization(BigDecimal allocated, BigDecimal capacity) {
+        if (capacity.signum() <= 0) {
+            return null;
+        }
+        return allocated.divide(capacity, 4, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static final class Tally {
+        final ResourceCategory category;
+        final String resourceType;
+        Tally parent;
+        BigDecimal capacity = BigDecimal.ZERO;
+        BigDecimal requested = BigDecimal.ZERO;
+        BigDecimal allocated = BigDecimal.ZERO;
+        int requests;
+        int approved;
+        int partial;
+        int deferred;
+        int denied;
+
+        Tally(ResourceCategory category, String resourceType) {
+            this.category = category;
+            this.resourceType = resourceType;
+        }
+
+        RunPoolSummary toSummary(RunPoolSummary.Scope scope, String key) {
+            return RunPoolSummary.builder()
+                .scope(scope)
+                .poolKey(key)
+                .category(category)
+                .resourceType(resourceType)
+                .capacity(capacity)
+                .requested(requested)
+                .allocated(allocated)
+                .utilization(utilization(allocated, capacity))
+                .requestCount(requests)
+                .approvedCount(approved)
+                .partialCount(partial)
+                .deferredCount(deferred)
+                .deniedCount(denied)
+                .build();
+        }
+    }
+}
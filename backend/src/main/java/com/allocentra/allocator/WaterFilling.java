@@ -0,0 +1,193 @@
+package com.allocentra.allocator;
+
+import java.util.Arrays;
+
+/**
+ * Weighted max-min fair shares of nested pools, by water-filling.
+ *
+ * Every item gets {@code max(floor, min(ceiling, weight * level))} for one water
+ * level per pool, the highest level at which the pool's subtree stays within its
+ * capacity. The total of a subtree is a piecewise linear, non-decreasing function
+ * of the level that bends only where an item starts rising (floor / weight) or
+ * stops (ceiling / weight). Those breakpoints are sorted once per pool, a binary
+ * search finds the segment where the total reaches the capacity, and the level is
+ * solved on that segment directly, with no iterating to convergence.
+ *
+ * Pools are solved children first. A child's level caps its items for every
+ * ancestor, which is the same as progressive filling stopping a subtree the moment
+ * its pool is spent, so an item ends at the lowest level on its path to the root.
+ * Items are ordered by pool in depth-first order, which makes every subtree one
+ * contiguous range. The cost is O(n log n) per level of nesting.
+ */
+final class WaterFilling {
+
+    private WaterFilling() {
+    }
+
+    /**
+     * Share of every item. Floors must already fit: no subtree's floors may exceed its capacity.
+     *
+     * @param parent parent pool of each pool, numbered before its children, or -1 at the top
+     * @param capacity total each pool's subtree may be given, floors included
+     * @param poolOf pool each item draws from
+     * @param weight share weights; an item weighing zero or less keeps its floor
+     */
+    static double[] shares(int[] parent, double[] capacity, int[] poolOf, double[] floor, double[] ceiling, double[] weight) {
+        int pools = parent.length;
+        int size = poolOf.length;
+
+        // Depth-first numbering, so each subtree covers the range [order[p], order[p] + extent[p])
+        int[] childStart = new int[pools + 1];
+        for (int p = 0; p < pools; p++) {
+            if (parent[p] >= 0) {
+                childStart[parent[p] + 1]++;
+            }
+        }
+        for (int p = 0; p < pools; p++) {
+            childStart[p + 1] += childStart[p];
+        }
+        int[] children = new int[childStart[pools]];
+        int[] fill = childStart.clone();
+        for (int p = 0; p < pools; p++) {
+            if (parent[p] >= 0) {
+                children[fill[parent[p]]++] = p;
+            }
+        }
+        int[] order = new int[pools];
+        int[] extent = new int[pools];
+        int[] stack = new int[pools];
+        int next = 0;
+        for (int root = 0; root < pools; root++) {
+            if (parent[root] >= 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int p = stack[--top];
+                order[p] = next++;
+                for (int c = childStart[p]; c < childStart[p + 1]; c++) {
+                    stack[top++] = children[c];
+                }
+            }
+        }
+        // Parents come first, so walking backwards finishes every child before its parent
+        int[] subtreePools = new int[pools];
+        Arrays.fill(subtreePools, 1);
+        for (int p = pools - 1; p >= 0; p--) {
+            if (parent[p] >= 0) {
+                subtreePools[parent[p]] += subtreePools[p];
+            }
+        }
+
+        // Items grouped by the depth-first position of their pool
+        int[] itemStart = new int[pools + 1];
+        for (int i = 0; i < size; i++) {
+            itemStart[order[poolOf[i]] + 1]++;
+        }
+        for (int p = 0; p < pools; p++) {
+            itemStart[p + 1] += itemStart[p];
+        }
+        int[] items = new int[size];
+        int[] place = itemStart.clone();
+        for (int i = 0; i < size; i++) {
+            items[place[order[poolOf[i]]]++] = i;
+        }
+        for (int p = 0; p < pools; p++) {
+            extent[p] = itemStart[order[p] + subtreePools[p]] - itemStart[order[p]];
+        }
+
+        double[] cap = new double[size];
+        Arrays.fill(cap, Double.POSITIVE_INFINITY);
+        double[] low = new double[size];
+        double[] high = new double[size];
+        double[] rate = new double[size];
+        double[] breakpoints = new double[2 * size];
+
+        for (int p = pools - 1; p >= 0; p--) {
+            int from = itemStart[order[p]];
+            int to = from + extent[p];
+            if (from == to) {
+                continue;
+            }
+            // Ceilings as lowered by the levels of the pools already solved below this one
+            for (int k = from; k < to; k++) {
+                int i = items[k];
+                low[k] = floor[i];
+                rate[k] = Math.max(weight[i], 0);
+                high[k] = rate[k] > 0 ? Math.max(floor[i], Math.min(ceiling[i], rate[k] * cap[i])) : floor[i];
+            }
+            double level = level(low, high, rate, from, to, capacity[p], breakpoints);
+            if (level < Double.POSITIVE_INFINITY) {
+                for (int k = from; k < to; k++) {
+                    cap[items[k]] = Math.min(cap[items[k]], level);
+                }
+            }
+        }
+
+        double[] shares = new double[size];
+        for (int i = 0; i < size; i++) {
+            double raised = weight[i] > 0 ? Math.min(ceiling[i], weight[i] * cap[i]) : floor[i];
+            shares[i] = Math.max(floor[i], raised);
+        }
+        return shares;
+    }
+
+    /**
+     * Highest level at which the items of one subtree stay within the capacity, or infinity
+     * when every item fits its ceiling
+     */
+    private static double level(double[] low, double[] high, double[] rate, int from, int to, double capacity, double[] breakpoints) {
+        double ceilings = 0;
+        for (int k = from; k < to; k++) {
+            ceilings += high[k];
+        }
+        if (ceilings <= capacity) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        int count = 0;
+        for (int k = from; k < to; k++) {
+            if (rate[k] > 0 && high[k] > low[k]) {
+                breakpoints[count++] = low[k] / rate[k];
+                breakpoints[count++] = high[k] / rate[k];
+            }
+        }
+        Arrays.sort(breakpoints, 0, count);
+
+        // The last breakpoint is every ceiling, which is over capacity; find the last one that is not
+        int lo = -1;
+        int hi = count - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (total(low, high, rate, from, to, breakpoints[mid]) <= capacity) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo < 0) {
+            // Floors alone fill the pool
+            return 0;
+        }
+
+        // Linear up to the next breakpoint: the rising items add their rate per unit of level
+        double at = breakpoints[lo];
+        double slope = 0;
+        for (int k = from; k < to; k++) {
+            if (rate[k] > 0 && low[k] / rate[k] <= at && at < high[k] / rate[k]) {
+                slope += rate[k];
+            }
+        }
+        double reached = total(low, high, rate, from, to, at);
+        return slope > 0 ? at + (capacity - reached) / slope : at;
+    }
+
+    private static double total(double[] low, double[] high, double[] rate, int from, int to, double level) {
+        double total = 0;
+        for (int k = from; k < to; k++) {
+            total += Math.max(low[k], Math.min(high[k], rate[k] * level));
+        }
+        return total;
+    }
+}
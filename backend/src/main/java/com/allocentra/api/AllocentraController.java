@@ -1,21 +1,42 @@
 package com.allocentra.api;
 
+import com.allocentra.allocator.InputFingerprintService;
+import com.allocentra.archive.RunArchiveService;
+import com.allocentra.config.WireFormats;
+import com.allocentra.dependency.DependencyIndexService;
 import com.allocentra.domain.*;
+import com.allocentra.export.RunExportService;
+import com.allocentra.journal.RunReplayService;
+import com.allocentra.ledger.RunCommitService;
+import com.allocentra.queue.RunJobQueue;
+import com.allocentra.quote.QuoteService;
 import com.allocentra.repository.*;
-import com.allocentra.allocator.AllocationEngine;
+import com.allocentra.rollforward.CycleRollForwardService;
+import com.allocentra.scoring.ScoringEngine;
+import com.allocentra.scoring.ScoringFormula;
+import com.allocentra.snapshot.SnapshotService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * Main REST API for Allocentra
@@ -28,8 +49,22 @@ public class AllocentraController {
 
     private final AllocationCycleRepository cycleRepository;
     private final RequestRepository requestRepository;
+    private final BudgetPoolRepository budgetPoolRepository;
     private final AllocationRunRepository runRepository;
-    private final AllocationEngine allocationEngine;
+    private final InputFingerprintService fingerprintService;
+    private final RunArchiveService archiveService;
+    private final RunPoolSummaryRepository poolSummaryRepository;
+    private final SnapshotService snapshotService;
+    private final QuoteService quoteService;
+    private final ScoringEngine scoringEngine;
+    private final RunCommitService commitService;
+    private final WireFormats wireFormats;
+    private final RunResponseCache responseCache;
+    private final RunReplayService replayService;
+    private final RunJobQueue jobQueue;
+    private final DependencyIndexService dependencyIndex;
+    private final RunExportService exportService;
+    private final CycleRollForwardService rollForwardService;
     
     @Value("${allocentra.engine.version}")
     private String engineVersion;
@@ -38,11 +73,70 @@ public class AllocentraController {
 
     @PostMapping("/cycles")
     @Operation(summary = "Create allocation cycle")
-    public ResponseEntity<AllocationCycle> createCycle(@RequestBody AllocationCycle cycle) {
+    public ResponseEntity<?> createCycle(@RequestBody AllocationCycle cycle) {
+        try {
+            scoringEngine.validate(cycle.getScoringFormula());
+            linkBudgetPools(cycle.getBudgetPools());
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+        
+        // Pools arrive nested in the body and need their owning side set
+        cycle.getBudgetPools().forEach(pool -> pool.setCycle(cycle));
+        cycle.getResourcePools().forEach(pool -> pool.setCycle(cycle));
         AllocationCycle saved = cycleRepository.save(cycle);
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
 
+    /**
+     * Resolve each pool's parent name to the pool of that name in the same body
+     *
+     * @throws IllegalArgumentException unless the pools form one tree per category,
+     *         each pool's total within its parent's
+     */
+    private static void linkBudgetPools(List<BudgetPool> pools) {
+        Map<String, BudgetPool> byName = new HashMap<>();
+        for (BudgetPool pool : pools) {
+            if (pool.getName() != null && byName.put(pool.getName(), pool) != null) {
+                throw new IllegalArgumentException("Budget pool name " + pool.getName() + " is used more than once");
+            }
+        }
+
+        Set<ResourceCategory> roots = EnumSet.noneOf(ResourceCategory.class);
+        for (BudgetPool pool : pools) {
+            if (pool.getParentName() == null) {
+                if (!roots.add(pool.getCategory())) {
+                    throw new IllegalArgumentException("More than one top-level " + pool.getCategory() + " budget pool");
+                }
+                continue;
+            }
+            BudgetPool parent = byName.get(pool.getParentName());
+            if (parent == null) {
+                throw new IllegalArgumentException("No budget pool named " + pool.getParentName());
+            }
+            if (parent.getCategory() != pool.getCategory()) {
+                throw new IllegalArgumentException("Budget pool " + pool.getName() + " must share its parent's category");
+            }
+            if (pool.getTotalAmount() != null && parent.getTotalAmount() != null
+                    && pool.getTotalAmount().compareTo(parent.getTotalAmount()) > 0) {
+                throw new IllegalArgumentException("Budget pool " + pool.getName() + " exceeds its parent's total");
+            }
+            pool.setParent(parent);
+        }
+
+        // A chain longer than the pool count can only be a loop
+        for (BudgetPool pool : pools) {
+            int steps = 0;
+            for (BudgetPool up = pool.getParent(); up != null; up = up.getParent()) {
+                if (++steps > pools.size()) {
+                    throw new IllegalArgumentException("Budget pools form a cycle");
+                }
+            }
+        }
+    }
+
     @GetMapping("/cycles/{id}")
     @Operation(summary = "Get cycle details")
     public ResponseEntity<AllocationCycle> getCycle(@PathVariable String id) {
@@ -51,6 +145,28 @@ public class AllocentraController {
             .orElse(ResponseEntity.notFound().build());
     }
 
+    @PutMapping("/cycles/{id}/scoring-formula")
+    @Operation(summary = "Set the cycle's scoring formula, or clear it to use the built-in weights")
+    public ResponseEntity<Map<String, Object>> setScoringFormula(
+        @PathVariable String id,
+        @RequestBody Map<String, String> formulaRequest
+    ) {
+        String formula = formulaRequest.get("formula");
+        Map<String, Object> response = new HashMap<>();
+        try {
+            scoringEngine.validate(formula);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            response.put("variables", ScoringFormula.VARIABLES);
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        AllocationCycle cycle = fingerprintService.saveScoringFormula(id, formula);
+        response.put("cycleId", cycle.getId());
+        response.put("scoringFormula", cycle.getScoringFormula());
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/cycles")
     @Operation(summary = "List all cycles")
     public ResponseEntity<List<AllocationCycle>> listCycles(
@@ -62,15 +178,123 @@ public class AllocentraController {
         return ResponseEntity.ok(cycleRepository.findAll());
     }
 
+    @PostMapping("/cycles/{id}/roll-forward")
+    @Operation(summary = "Start a new cycle with this cycle's pools and its deferred or denied requests")
+    public ResponseEntity<?> rollForwardCycle(
+        @PathVariable String id,
+        @RequestBody(required = false) Map<String, Object> rollForwardRequest
+    ) {
+        if (!cycleRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> body = rollForwardRequest != null ? rollForwardRequest : Map.of();
+        try {
+            Set<Request.RequestStatus> statuses = null;
+            if (body.get("statuses") instanceof List<?> names) {
+                statuses = EnumSet.noneOf(Request.RequestStatus.class);
+                for (Object name : names) {
+                    statuses.add(Request.RequestStatus.valueOf(String.valueOf(name).toUpperCase(Locale.ROOT)));
+                }
+            }
+            CycleRollForwardService.Options options = new CycleRollForwardService.Options(
+                (String) body.get("name"),
+                body.get("startDate") != null ? LocalDate.parse((String) body.get("startDate")) : null,
+                body.get("endDate") != null ? LocalDate.parse((String) body.get("endDate")) : null,
+                statuses,
+                (String) body.get("sourceRunId"),
+                body.get("amountScale") != null ? new BigDecimal(body.get("amountScale").toString()) : null,
+                body.get("budgetScale") != null ? new BigDecimal(body.get("budgetScale").toString()) : null,
+                body.get("deadlineShiftDays") != null ? ((Number) body.get("deadlineShiftDays")).intValue() : null,
+                (String) body.get("createdBy")
+            );
+            return ResponseEntity.status(HttpStatus.CREATED).body(rollForwardService.rollForward(id, options));
+        } catch (IllegalArgumentException | DateTimeParseException | ClassCastException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (IllegalStateException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+    }
+
     // ============ REQUESTS ============
 
     @PostMapping("/requests")
     @Operation(summary = "Create request")
-    public ResponseEntity<Request> createRequest(@RequestBody Request request) {
-        Request saved = requestRepository.save(request);
+    public ResponseEntity<?> createRequest(@RequestBody Request request) {
+        try {
+            resolveBudgetPool(request);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+        Request saved = fingerprintService.saveRequest(request);
+        quoteService.requestSaved(saved);
+        dependencyIndex.requestSaved(saved);
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
 
+    @PutMapping("/requests/{id}")
+    @Operation(summary = "Update request")
+    public ResponseEntity<?> updateRequest(@PathVariable String id, @RequestBody Request request) {
+        Optional<Request> existing = requestRepository.findById(id);
+        if (existing.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        // Requests stay in their cycle; everything else is replaced
+        request.setId(id);
+        request.setCycle(existing.get().getCycle());
+        request.setCreatedAt(existing.get().getCreatedAt());
+        try {
+            resolveBudgetPool(request);
+            checkDependencyLoop(request);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+        Request saved = fingerprintService.saveRequest(request);
+        quoteService.requestSaved(saved);
+        dependencyIndex.requestSaved(saved);
+        return ResponseEntity.ok(saved);
+    }
+
+    /**
+     * Refuse dependencies that would make a request depend on itself: it could never be funded
+     */
+    private void checkDependencyLoop(Request request) {
+        String loop = dependencyIndex.closesLoop(request.getCycle().getId(), request.getId(), request.getDependencies());
+        if (loop != null) {
+            throw new IllegalArgumentException(loop.equals(request.getId())
+                ? "A request cannot depend on itself"
+                : "Depending on " + loop + " would make this request depend on itself");
+        }
+    }
+
+    /**
+     * Check the budget pool a request names; naming the top-level pool is the same as naming none
+     */
+    private void resolveBudgetPool(Request request) {
+        if (request.getBudgetPoolId() == null) {
+            return;
+        }
+        if (request.getCategory() != ResourceCategory.MONEY) {
+            throw new IllegalArgumentException("Only MONEY requests draw on a budget pool");
+        }
+        String cycleId = request.getCycle() != null ? request.getCycle().getId() : null;
+        BudgetPool pool = budgetPoolRepository.findByIdAndCycleId(request.getBudgetPoolId(), cycleId)
+            .filter(found -> found.getCategory() == ResourceCategory.MONEY)
+            .orElseThrow(() -> new IllegalArgumentException(
+                "No MONEY budget pool " + request.getBudgetPoolId() + " in the request's cycle"));
+        if (pool.parentIdForJson() == null) {
+            request.setBudgetPoolId(null);
+        }
+    }
+
     @GetMapping("/requests")
     @Operation(summary = "List requests")
     public ResponseEntity<Page<Request>> listRequests(
@@ -100,6 +324,42 @@ public class AllocentraController {
             .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/cycles/{id}/requests/{requestId}/dependents")
+    @Operation(summary = "Requests that depend on a request, directly or transitively")
+    public ResponseEntity<?> getDependents(@PathVariable String id, @PathVariable String requestId) {
+        try {
+            return dependencyIndex.dependents(id, requestId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/cycles/{id}/requests/{requestId}/dependencies")
+    @Operation(summary = "Requests a request depends on, directly or transitively")
+    public ResponseEntity<?> getDependencies(@PathVariable String id, @PathVariable String requestId) {
+        try {
+            return dependencyIndex.dependencies(id, requestId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/cycles/{id}/quote")
+    @Operation(summary = "Project where a draft request would rank and whether it would be funded")
+    public ResponseEntity<?> quoteRequest(@PathVariable String id, @RequestBody Request draft) {
+        try {
+            return ResponseEntity.ok(quoteService.quote(id, draft));
+        } catch (IllegalStateException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+    }
+
     // ============ ALLOCATION RUNS ============
 
     @PostMapping("/runs")
@@ -111,56 +371,150 @@ public class AllocentraController {
         AllocationCycle cycle = cycleRepository.findById(cycleId)
             .orElseThrow(() -> new RuntimeException("Cycle not found"));
         
+        AllocationRun.AllocationMode allocationMode;
+        try {
+            allocationMode = AllocationRun.AllocationMode.of((String) runRequest.get("allocationMode"));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+        
         AllocationRun run = AllocationRun.builder()
             .cycle(cycle)
             .engineVersion(engineVersion)
             .allowPartialAllocations((Boolean) runRequest.getOrDefault("allowPartialAllocations", true))
+            .allocationMode(allocationMode)
             .notes((String) runRequest.get("notes"))
+            .createdBy((String) runRequest.get("createdBy"))
+            .evaluationDate(LocalDate.now())
+            .queuedRequests((int) requestRepository.countByCycleId(cycleId))
             .build();
         
-        AllocationRun savedRun = runRepository.save(run);
+        // An unchanged cycle with the same options would reproduce a completed run exactly
+        run.setInputFingerprint(fingerprintService.runFingerprint(cycle, run));
+        boolean force = Boolean.TRUE.equals(runRequest.get("force"));
+        if (!force) {
+            Optional<AllocationRun> previous = runRepository
+                .findFirstByCycleIdAndInputFingerprintAndStatusOrderByCompletedAtDesc(
+                    cycleId, run.getInputFingerprint(), AllocationRun.RunStatus.COMPLETED);
+            if (previous.isPresent()) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("runId", previous.get().getId());
+                response.put("status", previous.get().getStatus());
+                response.put("memoized", true);
+                response.put("message", "Inputs unchanged since run " + previous.get().getId() + ". Returning its results.");
+                return ResponseEntity.ok(response);
+            }
+        }
         
-        // Execute asynchronously
-        executeAllocationAsync(savedRun.getId());
+        // Queued as PENDING; the first instance with a free slot claims and executes it
+        AllocationRun savedRun = runRepository.save(run);
         
         Map<String, Object> response = new HashMap<>();
         response.put("runId", savedRun.getId());
-        response.put("status", "RUNNING");
-        response.put("message", "Allocation engine started. Poll /runs/" + savedRun.getId() + " for results.");
+        response.put("status", savedRun.getStatus());
+        jobQueue.queuePosition(savedRun.getId()).ifPresent(position -> putQueuePosition(response, position));
+        response.put("message", "Allocation run queued. Poll /runs/" + savedRun.getId() + " for results.");
         
         return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
     }
 
-    @Async
-    public void executeAllocationAsync(String runId) {
-        AllocationRun run = runRepository.findById(runId)
-            .orElseThrow(() -> new RuntimeException("Run not found"));
-        AllocationCycle cycle = cycleRepository.findByIdWithPools(run.getCycle().getId());
-        run.setCycle(cycle);
-        
-        AllocationRun completed = allocationEngine.execute(cycle, run);
-        runRepository.save(completed);
+    @PostMapping("/runs/{id}/commit")
+    @Operation(summary = "Apply a completed run's allocations to the cycle's pools")
+    public ResponseEntity<?> commitRun(@PathVariable String id) {
+        if (!runRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(commitService.commit(id));
+        } catch (IllegalStateException | OptimisticLockingFailureException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+    }
+
+    @PostMapping("/runs/{id}/replay")
+    @Operation(summary = "Re-execute a run from its journaled inputs and compare the outcome")
+    public ResponseEntity<?> replayRun(@PathVariable String id) {
+        if (!runRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(replayService.replay(id));
+        } catch (IllegalStateException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
     }
 
     @GetMapping("/runs/{id}")
     @Operation(summary = "Get run status and results")
-    public ResponseEntity<Map<String, Object>> getRunStatus(@PathVariable String id) {
-        AllocationRun run = runRepository.findByIdWithResults(id);
-        if (run == null) {
+    public ResponseEntity<?> getRunStatus(
+        @PathVariable String id,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        Optional<AllocationRun> found = runRepository.findById(id);
+        if (found.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
+        // Finished runs only change when committed, so their rendered response is cached until then
+        MediaType format = wireFormats.negotiate(accept);
+        String etag = responseCache.etag(found.get(), format);
+        if (etag == null) {
+            return ResponseEntity.ok(runStatusView(runRepository.findByIdWithResults(id)));
+        }
+        boolean gzip = wireFormats.acceptsGzip(acceptEncoding);
+        String representation = gzip ? responseCache.gzipEtag(etag) : etag;
+        if (responseCache.notModified(ifNoneMatch, etag)) {
+            return cacheHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED), found.get(), representation).build();
+        }
+        ResponseEntity.BodyBuilder response = cacheHeaders(ResponseEntity.ok(), found.get(), representation);
+        
+        byte[] compressed = responseCache.gzipped(etag, () -> {
+            try {
+                return wireFormats.mapperFor(format).writeValueAsBytes(runStatusView(runRepository.findByIdWithResults(id)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Unable to render run " + id, e);
+            }
+        });
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response
+            .contentType(format)
+            .body(gzip ? compressed : RunResponseCache.gunzip(compressed));
+    }
+
+    private ResponseEntity.BodyBuilder cacheHeaders(ResponseEntity.BodyBuilder response, AllocationRun run, String etag) {
+        return response
+            .eTag(etag)
+            .cacheControl(responseCache.cacheControl(run))
+            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    private Map<String, Object> runStatusView(AllocationRun run) {
         Map<String, Object> response = new HashMap<>();
         response.put("runId", run.getId());
         response.put("status", run.getStatus());
         response.put("cycleId", run.getCycle().getId());
+        response.put("allocationMode", run.getAllocationMode());
         
-        if (run.getStatus() == AllocationRun.RunStatus.RUNNING) {
+        if (run.getStatus() == AllocationRun.RunStatus.PENDING) {
+            jobQueue.queuePosition(run.getId()).ifPresent(position -> putQueuePosition(response, position));
+        } else if (run.getStatus() == AllocationRun.RunStatus.RUNNING) {
             response.put("progress", run.getProgress());
             response.put("currentPhase", run.getCurrentPhase());
         } else if (run.getStatus() == AllocationRun.RunStatus.COMPLETED) {
             response.put("completedAt", run.getCompletedAt());
             response.put("executionTimeMs", run.getExecutionTimeMs());
+            response.put("cpuTimeMs", run.getCpuTimeMs());
+            response.put("committedAt", run.getCommittedAt());
             
             Map<String, Object> summary = new HashMap<>();
             summary.put("totalRequests", run.getTotalRequests());
@@ -172,14 +526,171 @@ public class AllocentraController {
             summary.put("budgetUtilization", run.getBudgetUtilization());
             response.put("summary", summary);
             
-            response.put("results", run.getResults());
+            // Archived runs keep only their summary in the database
+            response.put("results", run.getArchivedAt() != null
+                ? archiveService.readResults(run).stream().map(this::archivedResultView).toList()
+                : run.getResults().stream()
+                    .sorted(Comparator.comparing(AllocationResult::getRank))
+                    .map(this::resultView)
+                    .toList());
         } else if (run.getStatus() == AllocationRun.RunStatus.FAILED) {
             response.put("errorMessage", run.getErrorMessage());
         }
         
+        return response;
+    }
+
+    private void putQueuePosition(Map<String, Object> response, RunJobQueue.QueuePosition position) {
+        response.put("queuePosition", position.position());
+        response.put("queued", position.queued());
+        response.put("tenant", position.tenant());
+        if (position.throttled() != null) {
+            response.put("throttled", position.throttled());
+        }
+    }
+
+    private Map<String, Object> resultView(AllocationResult result) {
+        Map<String, Object> view = new HashMap<>();
+        view.put("requestId", result.getRequest().getId());
+        view.put("requestTitle", result.getRequest().getTitle());
+        view.put("status", result.getStatus());
+        view.put("amountRequested", result.getAmountRequested());
+        view.put("amountAllocated", result.getAmountAllocated());
+        view.put("quantityRequested", result.getQuantityRequested());
+        view.put("quantityAllocated", result.getQuantityAllocated());
+        view.put("score", result.getScore());
+        view.put("rank", result.getRank());
+        view.put("reason", result.getReason());
+        return view;
+    }
+
+    private Map<String, Object> archivedResultView(Map<String, Object> archived) {
+        // Same fields as resultView, so archiving a run leaves its response unchanged
+        Map<String, Object> view = new HashMap<>();
+        for (String field : List.of("requestId", "requestTitle", "status", "amountRequested", "amountAllocated",
+                "quantityRequested", "quantityAllocated", "score", "rank", "reason")) {
+            view.put(field, archived.get(field));
+        }
+        return view;
+    }
+
+    @GetMapping("/runs/{id}/summary")
+    @Operation(summary = "Get run totals with per-pool and per-category utilization")
+    public ResponseEntity<Map<String, Object>> getRunSummary(
+        @PathVariable String id,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        Optional<AllocationRun> found = runRepository.findById(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        AllocationRun run = found.get();
+        String etag = responseCache.etag(run, wireFormats.negotiate(accept));
+        if (responseCache.notModified(ifNoneMatch, etag)) {
+            return cacheHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED), run, etag).build();
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("runId", run.getId());
+        response.put("status", run.getStatus());
+        response.put("totalRequests", run.getTotalRequests());
+        response.put("approved", run.getApprovedCount());
+        response.put("partial", run.getPartialCount());
+        response.put("deferred", run.getDeferredCount());
+        response.put("denied", run.getDeniedCount());
+        response.put("totalAllocated", run.getTotalAllocated());
+        response.put("budgetUtilization", run.getBudgetUtilization());
+        response.put("pools", poolSummaryRepository.findByRunIdAndScopeOrderByPoolKey(id, RunPoolSummary.Scope.POOL));
+        response.put("categories", poolSummaryRepository.findByRunIdAndScopeOrderByPoolKey(id, RunPoolSummary.Scope.CATEGORY));
+        if (etag != null) {
+            return cacheHeaders(ResponseEntity.ok(), run, etag).body(response);
+        }
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/runs/{id}/results")
+    @Operation(summary = "Stream a run's results in rank order as JSON, Smile or CBOR")
+    public ResponseEntity<StreamingResponseBody> streamRunResults(
+        @PathVariable String id,
+        @RequestParam(required = false) String violation,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        Optional<AllocationRun> found = runRepository.findById(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        AllocationRun run = found.get();
+        if (run.getStatus() != AllocationRun.RunStatus.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        
+        int violationMask;
+        try {
+            violationMask = violation != null ? ConstraintViolation.parseMask(violation) : 0;
+        } catch (IllegalArgumentException e) {
+            return streamedError(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        
+        MediaType format = wireFormats.negotiate(accept);
+        String etag = responseCache.filteredEtag(responseCache.etag(run, format), violationMask);
+        if (responseCache.notModified(ifNoneMatch, etag)) {
+            return cacheHeaders(ResponseEntity.status(HttpStatus.NOT_MODIFIED), run, etag).build();
+        }
+        ObjectMapper mapper = wireFormats.mapperFor(format);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                archiveService.writeResults(run, violationMask, generator);
+            }
+        };
+        return cacheHeaders(ResponseEntity.ok(), run, etag)
+            .contentType(format)
+            .header("X-Schema-Version", String.valueOf(RunArchiveService.RESULT_SCHEMA_VERSION))
+            .body(body);
+    }
+
+    @GetMapping("/runs/{id}/export")
+    @Operation(summary = "Download a run's results with request details as CSV or XLSX")
+    public ResponseEntity<StreamingResponseBody> exportRunResults(
+        @PathVariable String id,
+        @RequestParam(defaultValue = "csv") String format
+    ) {
+        Optional<AllocationRun> found = runRepository.findById(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        AllocationRun run = found.get();
+        RunExportService.Format exportFormat;
+        try {
+            exportFormat = RunExportService.Format.of(format);
+            exportService.checkExportable(run, exportFormat);
+        } catch (IllegalArgumentException e) {
+            return streamedError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            return streamedError(HttpStatus.CONFLICT, e.getMessage());
+        }
+
+        StreamingResponseBody body = out -> exportService.export(run, exportFormat, out);
+        String filename = "run-" + id + "." + exportFormat.extension();
+        return ResponseEntity.ok()
+            .contentType(exportFormat.mediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+            .body(body);
+    }
+
+    /**
+     * An error map for endpoints declared to stream their body, which cannot return one directly
+     */
+    private ResponseEntity<StreamingResponseBody> streamedError(HttpStatus status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        ObjectMapper mapper = wireFormats.mapperFor(MediaType.APPLICATION_JSON);
+        return ResponseEntity.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> mapper.writeValue(out, error));
+    }
+
     @GetMapping("/runs")
     @Operation(summary = "List allocation runs")
     public ResponseEntity<List<AllocationRun>> listRuns(
@@ -194,6 +705,117 @@ public class AllocentraController {
         return ResponseEntity.ok(runRepository.findAll());
     }
 
+    @PostMapping("/runs/archive")
+    @Operation(summary = "Archive results of runs past retention or in archived cycles")
+    public ResponseEntity<Map<String, Object>> archiveRuns() {
+        int archived = archiveService.archiveEligibleRuns();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("archivedRuns", archived);
+        return ResponseEntity.ok(response);
+    }
+
+    // ============ EXPLANATIONS ============
+
+    @GetMapping("/runs/{runId}/explanations/{requestId}")
+    @Operation(summary = "Why a request got its outcome and what would have changed it")
+    public ResponseEntity<Map<String, Object>> getExplanation(
+        @PathVariable String runId,
+        @PathVariable String requestId
+    ) {
+        Optional<AllocationRun> run = runRepository.findById(runId);
+        if (run.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return archiveService.readResult(run.get(), requestId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    // ============ SIMULATIONS ============
+
+    @PostMapping("/cycles/{id}/simulations")
+    @Operation(summary = "Simulate allocation against the cycle snapshot with adjusted capacities")
+    public ResponseEntity<SnapshotService.Simulation> simulate(
+        @PathVariable String id,
+        @RequestBody Map<String, Object> simulationRequest
+    ) {
+        Map<String, Double> multipliers = new HashMap<>();
+        Object requested = simulationRequest.get("capacityMultipliers");
+        if (requested instanceof Map<?, ?> map) {
+            map.forEach((poolKey, value) -> multipliers.put((String) poolKey, ((Number) value).doubleValue()));
+        }
+        
+        SnapshotService.Simulation simulation = snapshotService.simulate(
+            id,
+            multipliers,
+            (Boolean) simulationRequest.getOrDefault("allowPartialAllocations", true),
+            ((Number) simulationRequest.getOrDefault("trials", 1)).intValue(),
+            ((Number) simulationRequest.getOrDefault("jitter", 0)).doubleValue(),
+            ((Number) simulationRequest.getOrDefault("seed", 0)).longValue()
+        );
+        return ResponseEntity.ok(simulation);
+    }
+
+    // ============ DASHBOARD ============
+
+    @GetMapping("/dashboard/summary")
+    @Operation(summary = "Totals of the latest completed run of every active cycle")
+    public ResponseEntity<Map<String, Object>> getDashboardSummary() {
+        List<AllocationRun> latestRuns = runRepository.findLatestByCycleStatus(
+            AllocationCycle.CycleStatus.ACTIVE, AllocationRun.RunStatus.COMPLETED);
+        
+        int totalRequests = 0, approved = 0, partial = 0, deferred = 0, denied = 0;
+        List<String> runIds = new ArrayList<>();
+        for (AllocationRun run : latestRuns) {
+            runIds.add(run.getId());
+            totalRequests += run.getTotalRequests();
+            approved += run.getApprovedCount();
+            partial += run.getPartialCount();
+            deferred += run.getDeferredCount();
+            denied += run.getDeniedCount();
+        }
+        
+        // Category rows of all runs, merged per category; reads only the rollup table
+        Map<ResourceCategory, Map<String, Object>> categories = new EnumMap<>(ResourceCategory.class);
+        if (!runIds.isEmpty()) {
+            for (RunPoolSummary row : poolSummaryRepository.findByRunIdInAndScope(runIds, RunPoolSummary.Scope.CATEGORY)) {
+                Map<String, Object> merged = categories.computeIfAbsent(row.getCategory(), category -> {
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("category", category);
+                    entry.put("capacity", BigDecimal.ZERO);
+                    entry.put("requested", BigDecimal.ZERO);
+                    entry.put("allocated", BigDecimal.ZERO);
+                    return entry;
+                });
+                merged.put("capacity", ((BigDecimal) merged.get("capacity")).add(row.getCapacity()));
+                merged.put("requested", ((BigDecimal) merged.get("requested")).add(row.getRequested()));
+                merged.put("allocated", ((BigDecimal) merged.get("allocated")).add(row.getAllocated()));
+            }
+        }
+        for (Map<String, Object> entry : categories.values()) {
+            BigDecimal capacity = (BigDecimal) entry.get("capacity");
+            entry.put("utilization", capacity.signum() > 0
+                ? ((BigDecimal) entry.get("allocated")).divide(capacity, 4, RoundingMode.HALF_UP).doubleValue()
+                : null);
+        }
+        
+        Map<String, Object> money = categories.get(ResourceCategory.MONEY);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("activeCycles", cycleRepository.countByStatus(AllocationCycle.CycleStatus.ACTIVE));
+        response.put("runs", latestRuns.size());
+        response.put("totalRequests", totalRequests);
+        response.put("approved", approved);
+        response.put("partial", partial);
+        response.put("deferred", deferred);
+        response.put("denied", denied);
+        response.put("budgetAllocated", money != null ? money.get("allocated") : BigDecimal.ZERO);
+        response.put("budgetUtilization", money != null ? money.get("utilization") : null);
+        response.put("categories", new ArrayList<>(categories.values()));
+        return ResponseEntity.ok(response);
+    }
+
     // ============ HEALTH CHECK ============
 
     @GetMapping("/health")
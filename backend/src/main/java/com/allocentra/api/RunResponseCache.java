@@ -0,0 +1,177 @@
+package com.allocentra.api;
+
+import com.allocentra.domain.AllocationRun;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP caching for finished runs.
+ *
+ * A finished run only changes when it is committed, so its ETag is derived from
+ * the run id, its completion time and its commit time. Committed and failed runs
+ * are final and go out as {@code immutable}; completed runs that may still be
+ * committed must be revalidated, which costs a 304 and no body. Rendered
+ * responses are kept gzipped in a small LRU bounded by total bytes, and
+ * concurrent misses for the same response wait for a single render.
+ */
+@Component
+public class RunResponseCache {
+
+    private static final CacheControl FINAL = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+    private long bytes;
+
+    @Value("${allocentra.http-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    /**
+     * Strong ETag of a finished run's representation in the given encoding, or null while it can still change
+     */
+    public String etag(AllocationRun run, MediaType format) {
+        if (!isFinished(run)) {
+            return null;
+        }
+        String version = Long.toHexString(millis(run.getCompletedAt()))
+            + (run.getCommittedAt() != null ? "." + Long.toHexString(millis(run.getCommittedAt())) : "");
+        String suffix = MediaType.APPLICATION_JSON.equalsTypeAndSubtype(format) ? "" : "-" + format.getSubtype();
+        return "\"" + run.getId() + "-" + version + suffix + "\"";
+    }
+
+    /**
+     * ETag of the gzip-coded bytes of a representation, kept distinct as a strong validator must be
+     */
+    public String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    /**
+     * ETag of a representation narrowed to results with the given violations
+     */
+    public String filteredEtag(String etag, int violationMask) {
+        return violationMask == 0 ? etag : etag.substring(0, etag.length() - 1) + "-v" + Integer.toHexString(violationMask) + "\"";
+    }
+
+    public CacheControl cacheControl(AllocationRun run) {
+        boolean settled = run.getStatus() == AllocationRun.RunStatus.FAILED || run.getCommittedAt() != null;
+        return settled ? FINAL : REVALIDATE;
+    }
+
+    /**
+     * Whether an If-None-Match header names the representation; compared weakly, as RFC 9110 asks
+     */
+    public boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String gzipped = gzipEtag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipped)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gzipped response bytes for an ETag, rendered on a miss
+     */
+    public byte[] gzipped(String etag, Supplier<byte[]> render) {
+        synchronized (entries) {
+            byte[] hit = entries.get(etag);
+            if (hit != null) {
+                return hit;
+            }
+        }
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending = rendering.putIfAbsent(etag, mine);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            byte[] compressed = gzip(render.get());
+            store(etag, compressed);
+            mine.complete(compressed);
+            return compressed;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(etag, mine);
+        }
+    }
+
+    private void store(String etag, byte[] compressed) {
+        if (compressed.length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            byte[] previous = entries.put(etag, compressed);
+            bytes += compressed.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Decompress cached bytes for clients that do not accept gzip
+     */
+    public static byte[] gunzip(byte[] compressed) {
+        try (GZIPInputStream zip = new GZIPInputStream(new ByteArrayInputStream(compressed), 1 << 16)) {
+            return zip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(512, body.length / 4));
+        try (GZIPOutputStream zip = new GZIPOutputStream(out, 1 << 16)) {
+            zip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isFinished(AllocationRun run) {
+        return (run.getStatus() == AllocationRun.RunStatus.COMPLETED || run.getStatus() == AllocationRun.RunStatus.FAILED)
+            && run.getCompletedAt() != null;
+    }
+
+    private static long millis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : 0;
+    }
+}
@@ -0,0 +1,421 @@
+package com.allocentra.archive;
+
+import com.allocentra.domain.AllocationCycle;
+import com.allocentra.domain.AllocationResult;
+import com.allocentra.domain.AllocationRun;
+import com.allocentra.domain.ConstraintViolation;
+import com.allocentra.domain.DecisionExplanation;
+import com.allocentra.repository.AllocationResultRepository;
+import com.allocentra.repository.AllocationRunRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves the results of old runs out of the hot tables into compressed archive files.
+ *
+ * A run is archived when its cycle is ARCHIVED or it is older than the retention
+ * window. Its results are streamed in rank order to a gzip JSON file, the file is
+ * synced, and only then are the rows deleted in small batches, each in its own
+ * short transaction. The run row stays and points at the file, which is read back
+ * whenever the archived run is opened.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunArchiveService {
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Version of the result document served by {@link #writeResults}; bumped when a field changes meaning or goes away
+     */
+    public static final int RESULT_SCHEMA_VERSION = 1;
+
+    private final AllocationRunRepository runRepository;
+    private final AllocationResultRepository resultRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${allocentra.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${allocentra.archive.directory:./archive}")
+    private String directory;
+
+    @Value("${allocentra.archive.older-than-days:180}")
+    private int olderThanDays;
+
+    @Value("${allocentra.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(cron = "${allocentra.archive.cron:0 30 2 * * *}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archiveEligibleRuns();
+        }
+    }
+
+    /**
+     * Archive every finished run of an ARCHIVED cycle or past the retention window
+     */
+    public int archiveEligibleRuns() {
+        List<String> runIds = runRepository.findArchivableIds(
+            EnumSet.of(AllocationRun.RunStatus.COMPLETED, AllocationRun.RunStatus.FAILED),
+            AllocationCycle.CycleStatus.ARCHIVED,
+            Instant.now().minus(Duration.ofDays(olderThanDays))
+        );
+
+        int archived = 0;
+        for (String runId : runIds) {
+            try {
+                archiveRun(runId);
+                archived++;
+            } catch (Exception e) {
+                // Rows are only deleted after a complete file exists, so a failed run is simply retried later
+                log.error("Failed to archive run {}", runId, e);
+            }
+        }
+        log.info("Archived {} of {} eligible runs", archived, runIds.size());
+        return archived;
+    }
+
+    public void archiveRun(String runId) throws IOException {
+        AllocationRun run = runRepository.findById(runId)
+            .orElseThrow(() -> new RuntimeException("Run not found"));
+        if (run.getArchivedAt() != null) {
+            return;
+        }
+
+        Path target = Path.of(directory, run.getCycle().getId(), runId + ".json.gz");
+        int written = writeArchive(run, target);
+
+        int deleted = 0;
+        List<String> batch;
+        do {
+            batch = resultRepository.findIdBatch(runId, batchSize);
+            if (!batch.isEmpty()) {
+                List<String> resultIds = batch;
+                transactionTemplate.executeWithoutResult(status -> {
+                    resultRepository.deleteRemediationByResultIds(resultIds);
+                    resultRepository.deleteExplanationsByResultIds(resultIds);
+                    resultRepository.deleteByIds(resultIds);
+                });
+                deleted += batch.size();
+            }
+        } while (batch.size() == batchSize);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            AllocationRun archived = runRepository.findById(runId).orElseThrow();
+            archived.setArchivedAt(Instant.now());
+            archived.setArchivePath(target.toString());
+        });
+
+        log.info("Archived run {}: {} results written to {}, {} rows removed", runId, written, target, deleted);
+    }
+
+    /**
+     * Results of an archived run, in rank order
+     */
+    public List<Map<String, Object>> readResults(AllocationRun run) {
+        try (InputStream in = new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(Path.of(run.getArchivePath()))), 1 << 16)) {
+            Map<String, Object> document = objectMapper.readValue(in, new TypeReference<>() {});
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> results = (List<Map<String, Object>>) document.get("results");
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read archive of run " + run.getId(), e);
+        }
+    }
+
+    /**
+     * Visit the results of an archived run one at a time, in rank order, without reading the whole file
+     *
+     * @return the number of results visited
+     */
+    public int forEachArchivedResult(AllocationRun run, ResultHandler handler) throws IOException {
+        ObjectReader decimals = decimalReader();
+        int visited = 0;
+        try (InputStream in = new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(Path.of(run.getArchivePath()))), 1 << 16);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Archive of run " + run.getId() + " is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"results".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    handler.accept(decimals.readTree(parser));
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Reads trees whose decimals stay decimals, so amounts keep their scale
+     */
+    private ObjectReader decimalReader() {
+        return objectMapper.reader()
+            .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .without(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES);
+    }
+
+    private static int archivedViolationMask(JsonNode result) {
+        int mask = 0;
+        for (JsonNode name : result.path("constraintViolations")) {
+            mask |= ConstraintViolation.valueOf(name.asText()).bit();
+        }
+        return mask;
+    }
+
+    /**
+     * Receives archived results in the archive's JSON shape
+     */
+    public interface ResultHandler {
+        void accept(JsonNode result) throws IOException;
+    }
+
+    /**
+     * One result of a run in the archive's JSON shape, read from the archive once the run is archived
+     */
+    public Optional<Map<String, Object>> readResult(AllocationRun run, String requestId) {
+        if (run.getArchivedAt() != null) {
+            return readResults(run).stream()
+                .filter(result -> requestId.equals(result.get("requestId")))
+                .findFirst();
+        }
+        return transactionTemplate.execute(status -> resultRepository.findByRunIdAndRequestId(run.getId(), requestId)
+            .map(result -> {
+                try (TokenBuffer buffer = new TokenBuffer(objectMapper, false)) {
+                    writeResult(buffer, result);
+                    return objectMapper.readValue(buffer.asParser(), new TypeReference<Map<String, Object>>() {});
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+    }
+
+    private int writeArchive(AllocationRun run, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+
+        int written = 0;
+        try (FileOutputStream file = new FileOutputStream(partial.toFile());
+             OutputStream out = new GZIPOutputStream(new BufferedOutputStream(file, 1 << 16), 1 << 16);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+
+            json.writeStartObject();
+            json.writeNumberField("formatVersion", FORMAT_VERSION);
+            json.writeStringField("runId", run.getId());
+            json.writeStringField("cycleId", run.getCycle().getId());
+            json.writeStringField("engineVersion", run.getEngineVersion());
+            json.writeStringField("status", run.getStatus().name());
+            json.writeStringField("completedAt", String.valueOf(run.getCompletedAt()));
+
+            json.writeArrayFieldStart("results");
+            written = writeResultPages(run.getId(), 0, json);
+            json.writeEndArray();
+            json.writeEndObject();
+
+            json.flush();
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Stream a run's results in rank order as one document, in whatever encoding the generator writes.
+     * Rows are read a page at a time, or copied token by token from the archive file once the run is
+     * archived, so memory stays flat however many results the run has.
+     *
+     * @param violationMask when not zero, only results with at least one of these
+     *        {@link ConstraintViolation} bits are written
+     * @return the number of results written
+     */
+    public int writeResults(AllocationRun run, int violationMask, JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("schemaVersion", RESULT_SCHEMA_VERSION);
+        json.writeStringField("runId", run.getId());
+        json.writeStringField("cycleId", run.getCycle().getId());
+        json.writeStringField("engineVersion", run.getEngineVersion());
+        json.writeStringField("status", run.getStatus().name());
+        json.writeStringField("completedAt", String.valueOf(run.getCompletedAt()));
+        json.writeObjectField("totalRequests", run.getTotalRequests());
+
+        json.writeArrayFieldStart("results");
+        int written = run.getArchivedAt() != null
+            ? copyArchivedResults(run, violationMask, json)
+            : writeResultPages(run.getId(), violationMask, json);
+        json.writeEndArray();
+        json.writeEndObject();
+        json.flush();
+        return written;
+    }
+
+    private int writeResultPages(String runId, int violationMask, JsonGenerator json) {
+        int written = 0;
+        int afterRank = 0;
+        List<AllocationResult> page;
+        do {
+            page = readPage(runId, afterRank, violationMask, json);
+            written += page.size();
+            if (!page.isEmpty()) {
+                afterRank = page.get(page.size() - 1).getRank();
+            }
+        } while (page.size() == batchSize);
+        return written;
+    }
+
+    private int copyArchivedResults(AllocationRun run, int violationMask, JsonGenerator json) throws IOException {
+        int written = 0;
+        try (InputStream in = new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(Path.of(run.getArchivePath()))), 1 << 16);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Archive of run " + run.getId() + " is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"results".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    if (violationMask == 0) {
+                        copyValue(parser, json);
+                        written++;
+                        continue;
+                    }
+                    // Filtering needs the result's violations, which may come after other fields
+                    JsonNode result = decimalReader().readTree(parser);
+                    if ((archivedViolationMask(result) & violationMask) != 0) {
+                        json.writeTree(result);
+                        written++;
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Copy the value at the parser's current token; decimals stay decimals so amounts keep their scale
+     */
+    private static void copyValue(JsonParser parser, JsonGenerator json) throws IOException {
+        int depth = 0;
+        do {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                json.writeNumber(parser.getDecimalValue());
+            } else {
+                json.copyCurrentEvent(parser);
+            }
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+        } while (depth > 0 && parser.nextToken() != null);
+    }
+
+    /**
+     * Write one keyset page of results; the persistence context is dropped after each page
+     */
+    private List<AllocationResult> readPage(String runId, int afterRank, int violationMask, JsonGenerator json) {
+        return transactionTemplate.execute(status -> {
+            PageRequest pageRequest = PageRequest.of(0, batchSize);
+            List<AllocationResult> page = violationMask == 0
+                ? resultRepository.findPageAfterRank(runId, afterRank, pageRequest)
+                : resultRepository.findPageAfterRankWithViolations(runId, afterRank, violationMask, pageRequest);
+            try {
+                for (AllocationResult result : page) {
+                    writeResult(json, result);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entityManager.clear();
+            return page;
+        });
+    }
+
+    private void writeResult(JsonGenerator json, AllocationResult result) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("id", result.getId());
+        json.writeStringField("requestId", result.getRequest().getId());
+        json.writeStringField("requestTitle", result.getRequest().getTitle());
+        json.writeStringField("category", result.getRequest().getCategory().name());
+        json.writeStringField("status", result.getStatus().name());
+        json.writeObjectField("amountRequested", result.getAmountRequested());
+        json.writeObjectField("amountAllocated", result.getAmountAllocated());
+        json.writeObjectField("quantityRequested", result.getQuantityRequested());
+        json.writeObjectField("quantityAllocated", result.getQuantityAllocated());
+        json.writeNumberField("score", result.getScore());
+        json.writeNumberField("rank", result.getRank());
+        json.writeStringField("reason", result.getReason());
+        json.writeObjectField("constraintViolations", result.getConstraintViolations());
+
+        DecisionExplanation explanation = result.getExplanation();
+        if (explanation != null) {
+            json.writeObjectFieldStart("explanation");
+            json.writeStringField("scoreBreakdownJson", explanation.getScoreBreakdownJson());
+            json.writeStringField("reasonApproved", explanation.getReasonApproved());
+            json.writeStringField("reasonDenied", explanation.getReasonDenied());
+            json.writeStringField("reasonPartial", explanation.getReasonPartial());
+            json.writeStringField("reasonDeferred", explanation.getReasonDeferred());
+            json.writeStringField("comparedToRequestId", explanation.getComparedToRequestId());
+            json.writeStringField("comparedToRequestTitle", explanation.getComparedToRequestTitle());
+            json.writeObjectField("comparedToScore", explanation.getComparedToScore());
+            json.writeObjectField("scoreDifference", explanation.getScoreDifference());
+            json.writeStringField("whyThisWon", explanation.getWhyThisWon());
+            json.writeStringField("whyThisLost", explanation.getWhyThisLost());
+            json.writeObjectField("whatWouldChange", explanation.getWhatWouldChange());
+            json.writeObjectField("scoreNeeded", explanation.getScoreNeeded());
+            json.writeObjectField("poolIncreaseNeeded", explanation.getPoolIncreaseNeeded());
+            json.writeObjectField("largestFundableAmount", explanation.getLargestFundableAmount());
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+}
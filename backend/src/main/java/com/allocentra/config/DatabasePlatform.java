@@ -0,0 +1,34 @@
+package com.allocentra.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Identifies the database behind the data source, for the few queries that
+ * need PostgreSQL-specific SQL with a portable fallback (H2 in dev and tests)
+ */
+@Component
+@RequiredArgsConstructor
+public class DatabasePlatform {
+
+    private final DataSource dataSource;
+
+    private volatile Boolean postgres;
+
+    public boolean isPostgres() {
+        Boolean detected = postgres;
+        if (detected == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                detected = "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                throw new IllegalStateException("Unable to detect database platform", e);
+            }
+            postgres = detected;
+        }
+        return detected;
+    }
+}
@@ -0,0 +1,124 @@
+package com.allocentra.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Binary encodings offered next to JSON.
+ *
+ * Every endpoint answers in Smile ({@code application/x-jackson-smile}) or CBOR
+ * ({@code application/cbor}) when the Accept header asks for it; JSON stays the
+ * default for everything else. The binary mappers are built from the same
+ * customized builder as the JSON one, so all three encode the same fields.
+ */
+@Configuration
+public class WireFormats implements WebMvcConfigurer {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+    public static final MediaType CBOR = MediaType.parseMediaType(CBOR_VALUE);
+
+    private final ObjectMapper json;
+    private final ObjectMapper smile;
+    private final ObjectMapper cbor;
+
+    public WireFormats(ObjectMapper objectMapper, ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+        this.json = objectMapper;
+        this.smile = builders.getObject().smile().build();
+        this.cbor = builders.getObject().cbor().build();
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring registers its own binary converters with unconfigured mappers; use ours in their place
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+            || converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2SmileHttpMessageConverter(smile));
+        converters.add(new MappingJackson2CborHttpMessageConverter(cbor));
+    }
+
+    /**
+     * The encoding to answer in for an Accept header, JSON when it names none of ours
+     */
+    public MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType type : accepted) {
+            for (MediaType offered : List.of(MediaType.APPLICATION_JSON, SMILE, CBOR)) {
+                if (type.getQualityValue() > 0 && type.includes(offered)) {
+                    return offered;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Whether an Accept-Encoding header admits gzip: its own entry decides, else {@code *},
+     * and either only with a quality above zero
+     */
+    public boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        // A quality that cannot be read is no consent
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        Double decisive = gzip != null ? gzip : any;
+        return decisive != null && decisive > 0;
+    }
+
+    /**
+     * Mapper writing the given encoding
+     */
+    public ObjectMapper mapperFor(MediaType type) {
+        if (SMILE.equalsTypeAndSubtype(type)) {
+            return smile;
+        }
+        if (CBOR.equalsTypeAndSubtype(type)) {
+            return cbor;
+        }
+        return json;
+    }
+}
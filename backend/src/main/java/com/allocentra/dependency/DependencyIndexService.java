@@ -0,0 +1,203 @@
+package com.allocentra.dependency;
+
+import com.allocentra.allocator.DependencyGraph;
+import com.allocentra.allocator.InputFingerprintService;
+import com.allocentra.domain.Request;
+import com.allocentra.repository.AllocationCycleRepository;
+import com.allocentra.repository.RequestRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Answers "what depends on this request" and "what does it need", transitively,
+ * from an in-memory dependency graph per cycle.
+ *
+ * A cycle's graph is built on the first question about it and then kept current as
+ * requests are saved through this instance. Each question checks the cycle
+ * fingerprint first, so edits made through other instances trigger a rebuild
+ * instead of a stale answer.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DependencyIndexService {
+
+    private final AllocationCycleRepository cycleRepository;
+    private final RequestRepository requestRepository;
+    private final InputFingerprintService fingerprintService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${allocentra.dependencies.closure-max-requests:10000}")
+    private int closureMaxRequests;
+
+    private final Map<String, CycleDependencies> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * A request's direct and transitive neighbours in one direction. Missing lists
+     * dependencies on ids that have no request in the cycle.
+     */
+    public record Reach(
+        String requestId,
+        List<String> direct,
+        List<String> transitive,
+        List<String> missing,
+        boolean inLoop
+    ) {
+    }
+
+    /**
+     * Requests that depend on the given one, directly or through others; empty when it is not in the cycle
+     */
+    public Optional<Reach> dependents(String cycleId, String requestId) {
+        return read(cycleId, graph -> {
+            int node = graph.node(requestId);
+            if (node < 0 || !graph.isPresent(node)) {
+                return Optional.empty();
+            }
+            return Optional.of(reach(graph, node, graph.directNeededBy(node), graph.neededBy(node)));
+        });
+    }
+
+    /**
+     * Requests the given one depends on, directly or through others; empty when it is not in the cycle
+     */
+    public Optional<Reach> dependencies(String cycleId, String requestId) {
+        return read(cycleId, graph -> {
+            int node = graph.node(requestId);
+            if (node < 0 || !graph.isPresent(node)) {
+                return Optional.empty();
+            }
+            return Optional.of(reach(graph, node, graph.directNeeds(node), graph.needs(node)));
+        });
+    }
+
+    /**
+     * A dependency that would make the request depend on itself, or null when none would
+     */
+    public String closesLoop(String cycleId, String requestId, Collection<String> dependencies) {
+        if (requestId == null || dependencies == null || dependencies.isEmpty()) {
+            return null;
+        }
+        return read(cycleId, graph -> {
+            if (dependencies.contains(requestId)) {
+                return requestId;
+            }
+            int loop = graph.closesLoop(graph.node(requestId), dependencies);
+            return loop >= 0 ? graph.id(loop) : null;
+        });
+    }
+
+    /**
+     * Fold a saved request's dependencies into its cycle's graph, if one is loaded
+     */
+    public void requestSaved(Request request) {
+        String cycleId = request.getCycle().getId();
+        CycleDependencies index = indexes.get(cycleId);
+        if (index == null) {
+            return;
+        }
+        index.lock.writeLock().lock();
+        try {
+            index.graph.put(request.getId(), request.getDependencies());
+            index.fingerprint = cycleRepository.findInputFingerprintById(cycleId);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T read(String cycleId, Function<DependencyGraph, T> query) {
+        CycleDependencies index = index(cycleId);
+        index.lock.readLock().lock();
+        try {
+            if (index.graph.isClosureCurrent()) {
+                return query.apply(index.graph);
+            }
+        } finally {
+            index.lock.readLock().unlock();
+        }
+        // Edges were removed since the closures were built; rebuild them once, under the write lock
+        index.lock.writeLock().lock();
+        try {
+            index.graph.refreshClosure();
+            return query.apply(index.graph);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private CycleDependencies index(String cycleId) {
+        CycleDependencies index = indexes.get(cycleId);
+        if (isCurrent(index, cycleId)) {
+            return index;
+        }
+
+        synchronized (this) {
+            index = indexes.get(cycleId);
+            if (isCurrent(index, cycleId)) {
+                return index;
+            }
+            CycleDependencies built = transactionTemplate.execute(status -> build(cycleId));
+            indexes.put(cycleId, built);
+            log.debug("Built dependency index for cycle {} with {} requests", cycleId, built.graph.size());
+            return built;
+        }
+    }
+
+    private boolean isCurrent(CycleDependencies index, String cycleId) {
+        return index != null && Objects.equals(index.fingerprint, cycleRepository.findInputFingerprintById(cycleId));
+    }
+
+    private CycleDependencies build(String cycleId) {
+        if (!cycleRepository.existsById(cycleId)) {
+            throw new IllegalArgumentException("Cycle " + cycleId + " not found");
+        }
+        Long fingerprint = fingerprintService.cycleFingerprint(cycleId);
+
+        Map<String, List<String>> dependencies = new HashMap<>();
+        for (Object[] edge : requestRepository.findDependencyEdges(cycleId)) {
+            dependencies.computeIfAbsent((String) edge[0], id -> new ArrayList<>()).add((String) edge[1]);
+        }
+        DependencyGraph graph = new DependencyGraph(closureMaxRequests);
+        for (String id : requestRepository.findIdsByCycleId(cycleId)) {
+            graph.put(id, dependencies.getOrDefault(id, List.of()));
+        }
+        graph.refreshClosure();
+        return new CycleDependencies(graph, fingerprint);
+    }
+
+    private static Reach reach(DependencyGraph graph, int node, int[] direct, BitSet transitive) {
+        List<String> directIds = new ArrayList<>(direct.length);
+        for (int neighbour : direct) {
+            directIds.add(graph.id(neighbour));
+        }
+        List<String> transitiveIds = new ArrayList<>(transitive.cardinality());
+        List<String> missing = new ArrayList<>();
+        for (int at = transitive.nextSetBit(0); at >= 0; at = transitive.nextSetBit(at + 1)) {
+            if (at == node) {
+                continue;
+            }
+            (graph.isPresent(at) ? transitiveIds : missing).add(graph.id(at));
+        }
+        return new Reach(graph.id(node), directIds, transitiveIds, missing, transitive.get(node));
+    }
+
+    private static final class CycleDependencies {
+        final DependencyGraph graph;
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile Long fingerprint;
+
+        CycleDependencies(DependencyGraph graph, Long fingerprint) {
+            this.graph = graph;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
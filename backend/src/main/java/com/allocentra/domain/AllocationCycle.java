@@ -62,6 +62,13 @@ public class AllocationCycle {
     @Builder.Default
     private boolean allowPartialAllocations = true;
 
+    // Custom scoring formula; null scores with the built-in weighted formula
+    @Column(length = 2000)
+    private String scoringFormula;
+
+    // Order-independent sum of pool, request and formula input hashes, updated as requests change
+    private Long inputFingerprint;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
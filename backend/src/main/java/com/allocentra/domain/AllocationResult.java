@@ -7,6 +7,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.EnumSet;
 
 /**
  * Represents the result of an allocation for a specific request
@@ -63,12 +64,12 @@ public class AllocationResult {
     @Column(length = 1000)
     private String reason;
 
-    @ElementCollection
-    @CollectionTable(name = "allocation_result_constraints",
-        joinColumns = @JoinColumn(name = "result_id"))
-    @Column(name = "constraint_type")
+    /**
+     * Bits of {@link ConstraintViolation}
+     */
+    @Column(name = "constraint_violations", nullable = false)
     @Builder.Default
-    private java.util.List<String> constraintViolations = new java.util.ArrayList<>();
+    private int violationMask = 0;
 
     @OneToOne(mappedBy = "result", cascade = CascadeType.ALL, orphanRemoval = true)
     private DecisionExplanation explanation;
@@ -76,4 +77,16 @@ public class AllocationResult {
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
+
+    public void addViolation(ConstraintViolation violation) {
+        violationMask |= violation.bit();
+    }
+
+    public boolean hasViolation(ConstraintViolation violation) {
+        return (violationMask & violation.bit()) != 0;
+    }
+
+    public EnumSet<ConstraintViolation> getConstraintViolations() {
+        return ConstraintViolation.fromMask(violationMask);
+    }
 }
@@ -1,5 +1,7 @@
 package com.allocentra.domain;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
@@ -7,8 +9,10 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Represents an allocation run (execution of the allocation engine)
@@ -17,7 +21,8 @@ import java.util.List;
 @Table(name = "allocation_runs", indexes = {
     @Index(name = "idx_cycle_id", columnList = "cycle_id"),
     @Index(name = "idx_status", columnList = "status"),
-    @Index(name = "idx_created_at", columnList = "created_at")
+    @Index(name = "idx_created_at", columnList = "created_at"),
+    @Index(name = "idx_runs_fingerprint", columnList = "cycle_id, input_fingerprint")
 })
 @EntityListeners(AuditingEntityListener.class)
 @Getter
@@ -31,6 +36,7 @@ public class AllocationRun {
     @GeneratedValue(strategy = GenerationType.UUID)
     private String id;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cycle_id", nullable = false)
     private AllocationCycle cycle;
@@ -47,12 +53,25 @@ public class AllocationRun {
     @Builder.Default
     private boolean allowPartialAllocations = true;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private AllocationMode allocationMode = AllocationMode.GREEDY;
+
     @Column(columnDefinition = "TEXT")
     private String categoryCapsJson;
 
     @Column(length = 1000)
     private String notes;
 
+    // Date urgency is scored against, fixed when the run is submitted
+    private LocalDate evaluationDate;
+
+    // Hash of the cycle inputs and run options, used to reuse identical completed runs
+    private Long inputFingerprint;
+
+    // Results and rollups are served by their own endpoints, never with the run itself
+    @JsonIgnore
     @OneToMany(mappedBy = "run", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<AllocationResult> results = new ArrayList<>();
@@ -69,14 +88,49 @@ public class AllocationRun {
 
     private Double budgetUtilization;
 
+    @JsonIgnore
+    @OneToMany(mappedBy = "run", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Builder.Default
+    private List<RunPoolSummary> poolSummaries = new ArrayList<>();
+
     // Execution metrics
     private Long executionTimeMs;
+
+    // CPU time of the threads that executed the run, charged to its owner's share
+    private Long cpuTimeMs;
     private Double progress;
     private String currentPhase;
 
     @Column(length = 2000)
     private String errorMessage;
 
+    // Requests in the cycle when the run was submitted; the scheduler charges the run by them
+    private Integer queuedRequests;
+
+    // Job queue lease, held by the instance executing the run
+    private String claimedBy;
+    private Instant leaseExpiresAt;
+    private Instant heartbeatAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    // Set once the run's allocations were applied to the cycle's pools
+    private Instant committedAt;
+
+    // Set once the results were moved to an archive file and removed from the hot tables
+    private Instant archivedAt;
+
+    @Column(length = 1000)
+    private String archivePath;
+
+    // Segment and offset of the run's inputs in the input journal, set once it executed
+    @Column(length = 1000)
+    private String inputJournalPath;
+
+    private Long inputJournalOffset;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
@@ -93,9 +147,40 @@ public class AllocationRun {
         FAILED
     }
 
+    /**
+     * How each pool is shared among the requests drawing from it
+     */
+    public enum AllocationMode {
+        // Requests are funded in full in rank order; only the one at the boundary gets part
+        GREEDY,
+        // Requests fitting their minimum get weighted max-min fair shares, weighted by score
+        FAIR_SHARE;
+
+        public static AllocationMode of(String name) {
+            if (name == null) {
+                return GREEDY;
+            }
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown allocation mode " + name + "; use GREEDY or FAIR_SHARE");
+            }
+        }
+    }
+
+    @JsonGetter("cycleId")
+    public String cycleIdForJson() {
+        return cycle != null ? cycle.getId() : null;
+    }
+
     // Helper methods
     public void addResult(AllocationResult result) {
         results.add(result);
         result.setRun(this);
     }
+
+    public void addPoolSummary(RunPoolSummary summary) {
+        poolSummaries.add(summary);
+        summary.setRun(this);
+    }
 }
@@ -1,12 +1,19 @@
 package com.allocentra.domain;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
 
 /**
- * Represents a pool of budget for a specific category
+ * Represents a pool of budget for a specific category.
+ *
+ * Pools nest: a pool with a parent is carved out of it, every amount drawn from
+ * it is drawn from each ancestor as well, and its allocated amount includes
+ * everything drawn from its subtree. Each category has one top-level pool.
  */
 @Entity
 @Table(name = "budget_pools")
@@ -21,6 +28,7 @@ public class BudgetPool {
     @GeneratedValue(strategy = GenerationType.UUID)
     private String id;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cycle_id", nullable = false)
     private AllocationCycle cycle;
@@ -29,6 +37,19 @@ public class BudgetPool {
     @Column(nullable = false)
     private ResourceCategory category;
 
+    // Unique within the cycle; names the pool as a parent when the cycle is created
+    private String name;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "parent_id")
+    private BudgetPool parent;
+
+    // Name of the parent pool in a cycle creation body, resolved to the parent before saving
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String parentName;
+
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal totalAmount;
 
@@ -40,6 +61,21 @@ public class BudgetPool {
     @Builder.Default
     private String currency = "USD";
 
+    // Pool of an earlier cycle this one was carried forward from
+    @JsonIgnore
+    private String carriedFromId;
+
+    // Bumped by every write, including run commits, so concurrent edits fail instead of overwriting
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    // Read through the proxy's id, so detached pools never load their parent
+    @JsonGetter("parentId")
+    public String parentIdForJson() {
+        return parent != null ? parent.getId() : null;
+    }
+
     public BigDecimal getRemainingAmount() {
         return totalAmount.subtract(allocatedAmount);
     }
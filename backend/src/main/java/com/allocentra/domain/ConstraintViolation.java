@@ -0,0 +1,68 @@
+package com.allocentra.domain;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * Why an allocation result fell short, stored as one bit each in an int column.
+ * Bits are fixed per constant rather than taken from the ordinal, so constants
+ * can be added or reordered without rewriting stored masks.
+ */
+public enum ConstraintViolation {
+    BUDGET_EXHAUSTED(1),
+    BUDGET_LIMITED(1 << 1),
+    RESOURCE_EXHAUSTED(1 << 2),
+    RESOURCE_LIMITED(1 << 3),
+    DEPENDENCY_NOT_MET(1 << 4),
+    BELOW_MINIMUM_VIABLE(1 << 5);
+
+    private final int bit;
+
+    ConstraintViolation(int bit) {
+        this.bit = bit;
+    }
+
+    public int bit() {
+        return bit;
+    }
+
+    public static int mask(Collection<ConstraintViolation> violations) {
+        int mask = 0;
+        for (ConstraintViolation violation : violations) {
+            mask |= violation.bit;
+        }
+        return mask;
+    }
+
+    public static EnumSet<ConstraintViolation> fromMask(int mask) {
+        EnumSet<ConstraintViolation> violations = EnumSet.noneOf(ConstraintViolation.class);
+        for (ConstraintViolation violation : values()) {
+            if ((mask & violation.bit) != 0) {
+                violations.add(violation);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Mask of comma-separated violation names, case-insensitive
+     *
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static int parseMask(String names) {
+        int mask = 0;
+        for (String name : names.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            try {
+                mask |= valueOf(name.trim().toUpperCase(Locale.ROOT)).bit;
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown constraint violation " + name.trim()
+                    + "; expected one of " + EnumSet.allOf(ConstraintViolation.class));
+            }
+        }
+        return mask;
+    }
+}
@@ -2,7 +2,9 @@ package com.allocentra.domain;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -54,7 +56,17 @@ public class DecisionExplanation {
     @Column(length = 1000)
     private String whyThisLost;
 
+    // Remediation figures behind whatWouldChange; null when they do not apply
+    private Double scoreNeeded;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal poolIncreaseNeeded;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal largestFundableAmount;
+
     @ElementCollection
+    @BatchSize(size = 1000)
     @CollectionTable(name = "explanation_remediation",
         joinColumns = @JoinColumn(name = "explanation_id"))
     @Column(name = "suggestion")
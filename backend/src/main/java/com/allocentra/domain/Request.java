@@ -1,7 +1,12 @@
 package com.allocentra.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -17,7 +22,8 @@ import java.util.List;
 @Entity
 @Table(name = "requests", indexes = {
     @Index(name = "idx_cycle_id", columnList = "cycle_id"),
-    @Index(name = "idx_cycle_status", columnList = "cycle_id, status")
+    @Index(name = "idx_cycle_status", columnList = "cycle_id, status"),
+    @Index(name = "idx_cycle_carried_from", columnList = "cycle_id, carried_from_id")
 })
 @EntityListeners(AuditingEntityListener.class)
 @Getter
@@ -33,6 +39,7 @@ public class Request {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cycle_id", nullable = false)
+    @JsonIgnore
     private AllocationCycle cycle;
 
     @Column(nullable = false)
@@ -56,6 +63,9 @@ public class Request {
 
     private String resourceType;
 
+    // Nested budget pool a monetary request draws from; the category's top-level pool when null
+    private String budgetPoolId;
+
     @Column(precision = 19, scale = 2)
     private BigDecimal quantityRequested;
 
@@ -84,6 +94,7 @@ public class Request {
     private Integer strategic = 3;
 
     @ElementCollection
+    @BatchSize(size = 1000)
     @CollectionTable(name = "request_dependencies", 
         joinColumns = @JoinColumn(name = "request_id"))
     @Column(name = "dependency_id")
@@ -97,15 +108,35 @@ public class Request {
 
     private Double score;
 
+    // Hash of the allocation-relevant fields, this request's share of the cycle fingerprint
+    @JsonIgnore
+    private Long inputHash;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
     private String createdBy;
 
+    // Request of an earlier cycle this one was carried forward from
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String carriedFromId;
+
     private LocalDate startDate;
     private LocalDate endDate;
 
+    // The API refers to the cycle by id so the lazy association is never serialized.
+    // Not named getCycleId, which repository query derivation would take for an attribute.
+    @JsonGetter("cycleId")
+    public String cycleIdForJson() {
+        return cycle != null ? cycle.getId() : null;
+    }
+
+    @JsonSetter("cycleId")
+    public void cycleIdFromJson(String cycleId) {
+        this.cycle = cycleId != null ? AllocationCycle.builder().id(cycleId).build() : null;
+    }
+
     public enum Impact {
         LOW(1),
         MEDIUM(3),
@@ -1,5 +1,7 @@
 package com.allocentra.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -21,6 +23,7 @@ public class ResourcePool {
     @GeneratedValue(strategy = GenerationType.UUID)
     private String id;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cycle_id", nullable = false)
     private AllocationCycle cycle;
@@ -50,6 +53,11 @@ public class ResourcePool {
     @Builder.Default
     private boolean exclusive = false;
 
+    // Bumped by every write, including run commits, so concurrent edits fail instead of overwriting
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     public BigDecimal getRemainingQuantity() {
         return totalQuantity.subtract(allocatedQuantity);
     }
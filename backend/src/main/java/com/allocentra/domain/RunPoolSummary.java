@@ -0,0 +1,78 @@
+package com.allocentra.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Requested, allocated and utilization figures of one pool or category in a run.
+ * Written once when the run completes, so summaries never need to scan results.
+ */
+@Entity
+@Table(name = "run_pool_summaries", indexes = {
+    @Index(name = "idx_pool_summaries_run", columnList = "run_id, scope")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RunPoolSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private AllocationRun run;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Scope scope;
+
+    // Pool key (MONEY or CATEGORY:TYPE) for pools, the category name for categories
+    @Column(nullable = false)
+    private String poolKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ResourceCategory category;
+
+    private String resourceType;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal capacity;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal requested;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal allocated;
+
+    // Allocated over capacity, null when the pool has no capacity
+    private Double utilization;
+
+    @Column(nullable = false)
+    private Integer requestCount;
+
+    @Column(nullable = false)
+    private Integer approvedCount;
+
+    @Column(nullable = false)
+    private Integer partialCount;
+
+    @Column(nullable = false)
+    private Integer deferredCount;
+
+    @Column(nullable = false)
+    private Integer deniedCount;
+
+    public enum Scope {
+        POOL,
+        CATEGORY
+    }
+}
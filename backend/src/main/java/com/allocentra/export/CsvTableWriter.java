@@ -0,0 +1,74 @@
+package com.allocentra.export;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RFC 4180 CSV in UTF-8, with a byte order mark so spreadsheet applications detect the encoding.
+ *
+ * Text that a spreadsheet would take for a formula (starting with =, +, - or @) is
+ * prefixed with an apostrophe, so a request title cannot run as one when the file
+ * is opened.
+ */
+final class CsvTableWriter implements TableWriter {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final Writer out;
+
+    CsvTableWriter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES);
+        this.out.write('\uFEFF');
+    }
+
+    @Override
+    public void header(String... names) throws IOException {
+        row((Object[]) names);
+    }
+
+    @Override
+    public void row(Object... cells) throws IOException {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Object cell = cells[i];
+            if (cell instanceof BigDecimal decimal) {
+                out.write(decimal.toPlainString());
+            } else if (cell instanceof Number number) {
+                out.write(number.toString());
+            } else if (cell != null) {
+                writeText(cell.toString());
+            }
+        }
+        out.write("\r\n");
+    }
+
+    private void writeText(String text) throws IOException {
+        boolean formula = !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0;
+        boolean quote = formula || text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+            || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(text);
+            return;
+        }
+        out.write('"');
+        if (formula) {
+            out.write('\'');
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,171 @@
+package com.allocentra.export;
+
+import com.allocentra.archive.RunArchiveService;
+import com.allocentra.domain.AllocationRun;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Locale;
+
+/**
+ * Exports a run's results as a spreadsheet, one row per result in rank order.
+ *
+ * Rows come from a forward-only cursor over results joined with their request and
+ * explanation, fetched a block at a time inside one read-only transaction, and each
+ * is written out before the next is read, so a run of any size is exported in
+ * constant memory. Archived runs are read from their archive file the same way.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunExportService {
+
+    static final String[] COLUMNS = {
+        "rank", "request_id", "title", "category", "resource_type", "status",
+        "amount_requested", "amount_allocated", "quantity_requested", "quantity_allocated",
+        "score", "reason", "explanation"
+    };
+
+    private static final String RESULTS_SQL =
+        "SELECT r.rank, r.request_id, q.title, q.category, q.resource_type, r.status, " +
+        "r.amount_requested, r.amount_allocated, r.quantity_requested, r.quantity_allocated, r.score, r.reason, " +
+        "CASE r.status WHEN 'APPROVED' THEN e.reason_approved WHEN 'PARTIAL' THEN e.reason_partial " +
+        "WHEN 'DEFERRED' THEN e.reason_deferred WHEN 'DENIED' THEN e.reason_denied END " +
+        "FROM allocation_results r JOIN requests q ON q.id = r.request_id " +
+        "LEFT JOIN decision_explanations e ON e.result_id = r.id " +
+        "WHERE r.run_id = ? ORDER BY r.rank";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RunArchiveService archiveService;
+
+    @Value("${allocentra.export.fetch-size:2000}")
+    private int fetchSize;
+
+    public enum Format {
+        CSV("csv", MediaType.parseMediaType("text/csv;charset=UTF-8")),
+        XLSX("xlsx", MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        Format(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown export format " + name + "; use csv or xlsx");
+            }
+        }
+    }
+
+    /**
+     * Check that a completed run fits the format before any of it is written
+     */
+    public void checkExportable(AllocationRun run, Format format) {
+        if (run.getStatus() != AllocationRun.RunStatus.COMPLETED) {
+            throw new IllegalStateException("Only COMPLETED runs can be exported");
+        }
+        Integer results = run.getTotalRequests();
+        if (format == Format.XLSX && results != null && results >= XlsxTableWriter.MAX_ROWS) {
+            throw new IllegalStateException("Run has " + results + " results, more than a worksheet holds; export it as csv");
+        }
+    }
+
+    /**
+     * Write every result of the run to the stream, which is left open
+     *
+     * @return the number of rows written, not counting the header
+     */
+    public int export(AllocationRun run, Format format, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        int written;
+        try (TableWriter table = format == Format.XLSX ? new XlsxTableWriter(out, "Run results") : new CsvTableWriter(out)) {
+            table.header(COLUMNS);
+            written = run.getArchivedAt() != null ? exportArchived(run, table) : exportRows(run.getId(), table);
+        }
+        log.info("Exported {} results of run {} as {} in {} ms",
+            written, run.getId(), format.extension(), (System.nanoTime() - started) / 1_000_000);
+        return written;
+    }
+
+    private int exportRows(String runId, TableWriter table) throws IOException {
+        int[] written = {0};
+        RowCallbackHandler writeRow = rs -> {
+            try {
+                table.row(
+                    rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6),
+                    rs.getBigDecimal(7), rs.getBigDecimal(8), rs.getBigDecimal(9), rs.getBigDecimal(10),
+                    rs.getBigDecimal(11), rs.getString(12), rs.getString(13));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written[0]++;
+        };
+        try {
+            // PostgreSQL only fetches by cursor inside a transaction; otherwise it reads the whole result set
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                    RESULTS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setString(1, runId);
+                return statement;
+            }, writeRow));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written[0];
+    }
+
+    private int exportArchived(AllocationRun run, TableWriter table) throws IOException {
+        return archiveService.forEachArchivedResult(run, result -> {
+            String status = text(result, "status");
+            table.row(
+                result.path("rank").asInt(), text(result, "requestId"), text(result, "requestTitle"),
+                text(result, "category"), null, status,
+                decimal(result, "amountRequested"), decimal(result, "amountAllocated"),
+                decimal(result, "quantityRequested"), decimal(result, "quantityAllocated"),
+                decimal(result, "score"), text(result, "reason"),
+                status != null ? text(result.path("explanation"), "reason" + capitalized(status)) : null);
+        });
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static BigDecimal decimal(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.decimalValue();
+    }
+
+    private static String capitalized(String status) {
+        return status.charAt(0) + status.substring(1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,21 @@
+package com.allocentra.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes a table row by row to a stream, holding nothing but the current row.
+ * Cells are strings, numbers or null for an empty cell.
+ */
+public interface TableWriter extends Closeable {
+
+    void header(String... names) throws IOException;
+
+    void row(Object... cells) throws IOException;
+
+    /**
+     * Finish the document; the underlying stream is left open
+     */
+    @Override
+    void close() throws IOException;
+}
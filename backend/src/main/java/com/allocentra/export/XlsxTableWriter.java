@@ -0,0 +1,173 @@
+package com.allocentra.export;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A single-sheet Office Open XML workbook written as a stream.
+ *
+ * The package parts that do not depend on the data are written first and the sheet
+ * last, so rows go straight into the compressed sheet entry as they arrive. Strings
+ * are stored inline in their cells rather than in a shared-strings part, which would
+ * have to hold every distinct string until the end. The header row is bold and
+ * frozen.
+ */
+final class XlsxTableWriter implements TableWriter {
+
+    /**
+     * Rows a worksheet can hold
+     */
+    static final int MAX_ROWS = 1_048_576;
+
+    private static final int MAX_CELL_CHARS = 32_767;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final String CONTENT_TYPES = """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+        <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+        <Default Extension="xml" ContentType="application/xml"/>\
+        <Override PartName="/xl/workbook.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+        <Override PartName="/xl/styles.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>\
+        <Override PartName="/xl/worksheets/sheet1.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+        </Types>""";
+
+    private static final String ROOT_RELS = """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+        <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" Target="xl/workbook.xml"/>\
+        </Relationships>""";
+
+    private static final String WORKBOOK = """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" \
+        xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships">\
+        <sheets><sheet name="%s" sheetId="1" r:id="rId1"/></sheets></workbook>""";
+
+    private static final String WORKBOOK_RELS = """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+        <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet1.xml"/>\
+        <Relationship Id="rId2" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles" Target="styles.xml"/>\
+        </Relationships>""";
+
+    private static final String STYLES = """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+        <fonts count="2"><font><sz val="11"/><name val="Calibri"/></font><font><b/><sz val="11"/><name val="Calibri"/></font></fonts>\
+        <fills count="2"><fill><patternFill patternType="none"/></fill><fill><patternFill patternType="gray125"/></fill></fills>\
+        <borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>\
+        <cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>\
+        <cellXfs count="2"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/>\
+        <xf numFmtId="0" fontId="1" fillId="0" borderId="0" xfId="0" applyFont="1"/></cellXfs>\
+        </styleSheet>""";
+
+    private static final String SHEET_START = """
+        <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+        <worksheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+        <sheetViews><sheetView workbookViewId="0">\
+        <pane ySplit="1" topLeftCell="A2" activePane="bottomLeft" state="frozen"/>\
+        </sheetView></sheetViews><sheetData>""";
+
+    private static final String SHEET_END = "</sheetData></worksheet>";
+
+    private final ZipOutputStream zip;
+    private final Writer sheet;
+    private int rows;
+
+    XlsxTableWriter(OutputStream out, String sheetName) throws IOException {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        part("[Content_Types].xml", CONTENT_TYPES);
+        part("_rels/.rels", ROOT_RELS);
+        part("xl/workbook.xml", String.format(WORKBOOK, escape(sheetName)));
+        part("xl/_rels/workbook.xml.rels", WORKBOOK_RELS);
+        part("xl/styles.xml", STYLES);
+
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        // Closing this writer would close the zip; it is only ever flushed
+        this.sheet = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_BYTES);
+        sheet.write(SHEET_START);
+    }
+
+    @Override
+    public void header(String... names) throws IOException {
+        writeRow(names, true);
+    }
+
+    @Override
+    public void row(Object... cells) throws IOException {
+        writeRow(cells, false);
+    }
+
+    private void writeRow(Object[] cells, boolean bold) throws IOException {
+        if (rows == MAX_ROWS) {
+            throw new IOException("A worksheet holds at most " + MAX_ROWS + " rows");
+        }
+        rows++;
+        sheet.write("<row r=\"");
+        sheet.write(Integer.toString(rows));
+        sheet.write("\">");
+        for (Object cell : cells) {
+            String style = bold ? " s=\"1\"" : "";
+            if (cell instanceof BigDecimal decimal) {
+                sheet.write("<c" + style + "><v>" + decimal.toPlainString() + "</v></c>");
+            } else if (cell instanceof Number number) {
+                sheet.write("<c" + style + "><v>" + number + "</v></c>");
+            } else if (cell != null) {
+                String text = cell.toString();
+                sheet.write("<c" + style + " t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                sheet.write(escape(text.length() > MAX_CELL_CHARS ? text.substring(0, MAX_CELL_CHARS) : text));
+                sheet.write("</t></is></c>");
+            } else {
+                sheet.write("<c" + style + "/>");
+            }
+        }
+        sheet.write("</row>");
+    }
+
+    @Override
+    public void close() throws IOException {
+        sheet.write(SHEET_END);
+        sheet.flush();
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+    }
+
+    private void part(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    /**
+     * XML text with markup escaped and characters XML 1.0 cannot carry dropped
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                default -> c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == 0xFFFE || c == 0xFFFF ? "" : null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped != null ? escaped.toString() : text;
+    }
+}
@@ -0,0 +1,69 @@
+package com.allocentra.journal;
+
+import com.allocentra.domain.AllocationRun;
+import com.allocentra.domain.ResourceCategory;
+import com.allocentra.domain.Request;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything a run read from its cycle and options, as written to the input journal.
+ *
+ * Requests keep the order the engine saw them in, since ties in score are ranked
+ * by that order, and carry the score the run gave them.
+ */
+public record RunInputs(
+    int formatVersion,
+    String runId,
+    String cycleId,
+    String cycleName,
+    String engineVersion,
+    Instant journaledAt,
+    LocalDate evaluationDate,
+    boolean allowPartialAllocations,
+    String categoryCapsJson,
+    AllocationRun.AllocationMode allocationMode,
+    String scoringFormula,
+    Map<String, Double> weights,
+    List<Pool> budgetPools,
+    List<Pool> resourcePools,
+    List<Item> requests
+) {
+
+    /**
+     * A pool's capacity: the total amount of a budget pool or the total quantity of a resource pool.
+     * Budget pools also carry their id and parent, which entries written before pools nested lack.
+     */
+    public record Pool(
+        ResourceCategory category,
+        String resourceType,
+        BigDecimal capacity,
+        String id,
+        String parentId
+    ) {
+    }
+
+    public record Item(
+        String id,
+        String title,
+        ResourceCategory category,
+        String resourceType,
+        BigDecimal amountRequested,
+        BigDecimal minimumViableAllocation,
+        BigDecimal quantityRequested,
+        BigDecimal minimumViableQuantity,
+        Integer priority,
+        LocalDate urgencyDeadline,
+        Request.Impact impact,
+        Request.Risk risk,
+        Integer strategic,
+        List<String> dependencies,
+        Double score,
+        String budgetPoolId
+    ) {
+    }
+}
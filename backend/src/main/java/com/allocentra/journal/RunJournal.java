@@ -0,0 +1,292 @@
+package com.allocentra.journal;
+
+import com.allocentra.config.WireFormats;
+import com.allocentra.domain.AllocationCycle;
+import com.allocentra.domain.AllocationRun;
+import com.allocentra.domain.BudgetPool;
+import com.allocentra.domain.Request;
+import com.allocentra.domain.ResourcePool;
+import com.allocentra.scoring.ScoringEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Append-only journal of the inputs every run was executed with.
+ *
+ * Each run adds one frame to the end of the current segment file: its length, a
+ * CRC-32 and the deflated Smile encoding of its {@link RunInputs}. Frames are
+ * compressed before the segment lock is taken, so appending is one sequential
+ * write. Segments are never rewritten; a new one is started once the current one
+ * reaches {@code allocentra.journal.segment-bytes}. A run records the segment and
+ * offset of its frame, which is all a replay needs to read it back.
+ *
+ * Segments are named after the instance that claimed the run, so instances never
+ * append to the same file. Any instance may be asked to replay any run, so with more
+ * than one instance {@code allocentra.journal.directory} must be a directory they all
+ * share, mounted at the same path.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RunJournal {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".journal";
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    private final ScoringEngine scoringEngine;
+    private final WireFormats wireFormats;
+
+    @Value("${allocentra.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${allocentra.journal.directory:./journal}")
+    private String directory;
+
+    @Value("${allocentra.journal.segment-bytes:268435456}")
+    private long segmentBytes;
+
+    @Value("${allocentra.journal.sync:false}")
+    private boolean sync;
+
+    private String writer;
+    private Path segment;
+    private FileChannel channel;
+
+    /**
+     * Where a run's frame starts
+     */
+    public record Position(String segment, long offset) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append the inputs a run was executed with, scores included once the engine set them,
+     * to a segment of the instance {@code owner} that executed it
+     */
+    public Position append(AllocationCycle cycle, AllocationRun run, String owner) throws IOException {
+        byte[] frame = frame(inputs(cycle, run));
+        synchronized (this) {
+            FileChannel out = channelFor(segmentPrefix(owner), frame.length);
+            long offset = out.size();
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            if (sync) {
+                out.force(false);
+            }
+            log.debug("Journaled inputs of run {} at {}:{} ({} bytes)", run.getId(), segment, offset, frame.length);
+            return new Position(segment.toString(), offset);
+        }
+    }
+
+    /**
+     * The inputs journaled for a run
+     *
+     * @throws IllegalStateException if the run has no journal entry, or its segment is not on this instance
+     */
+    public RunInputs read(AllocationRun run) throws IOException {
+        if (run.getInputJournalPath() == null || run.getInputJournalOffset() == null) {
+            throw new IllegalStateException("Run " + run.getId() + " has no journaled inputs");
+        }
+        Path file = Path.of(run.getInputJournalPath());
+        if (!Files.exists(file)) {
+            throw new IllegalStateException("Journal segment " + file + " of run " + run.getId()
+                + " is not readable on this instance; allocentra.journal.directory must be shared by all instances");
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long offset = run.getInputJournalOffset();
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+            readFully(in, header, offset);
+            int length = header.getInt(0);
+            if (length <= 0 || offset + FRAME_HEADER_BYTES + length > in.size()) {
+                throw new IOException("Truncated journal frame at " + offset + " in " + run.getInputJournalPath());
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(in, payload, offset + FRAME_HEADER_BYTES);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                throw new IOException("Corrupt journal frame at " + offset + " in " + run.getInputJournalPath());
+            }
+            try (InputStream inflated = new InflaterInputStream(new ByteArrayInputStream(payload.array()))) {
+                RunInputs inputs = smile().readValue(inflated, RunInputs.class);
+                if (!run.getId().equals(inputs.runId())) {
+                    throw new IOException("Journal frame at " + offset + " belongs to run " + inputs.runId());
+                }
+                return inputs;
+            }
+        }
+    }
+
+    private RunInputs inputs(AllocationCycle cycle, AllocationRun run) {
+        List<RunInputs.Pool> budgetPools = new ArrayList<>(cycle.getBudgetPools().size());
+        for (BudgetPool pool : cycle.getBudgetPools()) {
+            budgetPools.add(new RunInputs.Pool(pool.getCategory(), null, pool.getTotalAmount(),
+                pool.getId(), pool.parentIdForJson()));
+        }
+        List<RunInputs.Pool> resourcePools = new ArrayList<>(cycle.getResourcePools().size());
+        for (ResourcePool pool : cycle.getResourcePools()) {
+            resourcePools.add(new RunInputs.Pool(pool.getCategory(), pool.getResourceType(), pool.getTotalQuantity(),
+                null, null));
+        }
+        List<RunInputs.Item> requests = new ArrayList<>(cycle.getRequests().size());
+        for (Request request : cycle.getRequests()) {
+            requests.add(new RunInputs.Item(
+                request.getId(),
+                request.getTitle(),
+                request.getCategory(),
+                request.getResourceType(),
+                request.getAmountRequested(),
+                request.getMinimumViableAllocation(),
+                request.getQuantityRequested(),
+                request.getMinimumViableQuantity(),
+                request.getPriority(),
+                request.getUrgencyDeadline(),
+                request.getImpact(),
+                request.getRisk(),
+                request.getStrategic(),
+                request.getDependencies(),
+                request.getScore(),
+                request.getBudgetPoolId()
+            ));
+        }
+        return new RunInputs(
+            FORMAT_VERSION,
+            run.getId(),
+            cycle.getId(),
+            cycle.getName(),
+            run.getEngineVersion(),
+            Instant.now(),
+            // Runs submitted without a date were scored against the day they ran
+            run.getEvaluationDate() != null ? run.getEvaluationDate() : LocalDate.now(),
+            run.isAllowPartialAllocations(),
+            run.getCategoryCapsJson(),
+            run.getAllocationMode(),
+            cycle.getScoringFormula(),
+            scoringEngine.getWeights(),
+            budgetPools,
+            resourcePools,
+            requests
+        );
+    }
+
+    private byte[] frame(RunInputs inputs) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(4096);
+        frame.write(new byte[FRAME_HEADER_BYTES]);
+        // Fastest level: the journal is written for every run and read back rarely
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(frame, deflater, 1 << 16)) {
+            smile().writeValue(out, inputs);
+        } finally {
+            deflater.end();
+        }
+
+        byte[] bytes = frame.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, FRAME_HEADER_BYTES, bytes.length - FRAME_HEADER_BYTES);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - FRAME_HEADER_BYTES).putInt((int) crc.getValue());
+        return bytes;
+    }
+
+    private FileChannel channelFor(String prefix, int frameBytes) throws IOException {
+        if (channel != null && !prefix.equals(writer)) {
+            close();
+        }
+        if (channel == null) {
+            Files.createDirectories(Path.of(directory));
+            writer = prefix;
+            open(segmentPath(lastSegmentNumber()));
+        }
+        if (channel.size() > 0 && channel.size() + frameBytes > segmentBytes) {
+            channel.close();
+            open(segmentPath(segmentNumber(segment) + 1));
+            log.info("Started input journal segment {}", segment);
+        }
+        return channel;
+    }
+
+    private Path segmentPath(long number) {
+        return Path.of(directory, String.format("%s%08d%s", writer, number, SUFFIX));
+    }
+
+    /**
+     * File name prefix of an instance's segments, its id reduced to characters safe in any file system
+     */
+    private static String segmentPrefix(String owner) {
+        return owner.replaceAll("[^A-Za-z0-9._]", "_") + "-";
+    }
+
+    private void open(Path file) throws IOException {
+        segment = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private long lastSegmentNumber() throws IOException {
+        long last = 1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(directory), writer + "*" + SUFFIX)) {
+            for (Path file : files) {
+                last = Math.max(last, segmentNumber(file));
+            }
+        }
+        return last;
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal segment");
+            }
+        }
+    }
+
+    private ObjectMapper smile() {
+        return wireFormats.mapperFor(WireFormats.SMILE);
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.allocentra.journal;
+
+import com.allocentra.allocator.AllocationEngine;
+import com.allocentra.archive.RunArchiveService;
+import com.allocentra.domain.*;
+import com.allocentra.repository.AllocationResultRepository;
+import com.allocentra.repository.AllocationRunRepository;
+import com.allocentra.scoring.ScoringEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Re-executes a run from its journaled inputs and compares the outcome with the original.
+ *
+ * The replay rebuilds a detached cycle from the journal and runs it through the
+ * engine as deployed now, so nothing is read from the current requests or pools
+ * and nothing is persisted. Scoring weights are journaled too: when they differ
+ * from the weights in effect, the replay scores with an equivalent formula.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunReplayService {
+
+    private static final int MAX_DIFFERENCES = 100;
+
+    private final RunJournal runJournal;
+    private final AllocationEngine allocationEngine;
+    private final ScoringEngine scoringEngine;
+    private final AllocationRunRepository runRepository;
+    private final AllocationResultRepository resultRepository;
+    private final RunArchiveService archiveService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${allocentra.engine.version}")
+    private String engineVersion;
+
+    /**
+     * Replay a run from its journal
+     *
+     * @throws IllegalStateException if the run was never journaled
+     */
+    public Replay replay(String runId) {
+        AllocationRun original = runRepository.findById(runId)
+            .orElseThrow(() -> new RuntimeException("Run not found"));
+        RunInputs inputs;
+        try {
+            inputs = runJournal.read(original);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the journaled inputs of run " + runId, e);
+        }
+
+        AllocationCycle cycle = cycle(inputs);
+        AllocationRun replay = AllocationRun.builder()
+            .id(runId)
+            .cycle(cycle)
+            .engineVersion(engineVersion)
+            .allowPartialAllocations(inputs.allowPartialAllocations())
+            .categoryCapsJson(inputs.categoryCapsJson())
+            // Entries written before allocation modes existed have none and were greedy
+            .allocationMode(inputs.allocationMode() != null ? inputs.allocationMode() : AllocationRun.AllocationMode.GREEDY)
+            .evaluationDate(inputs.evaluationDate())
+            .build();
+
+        // Only outcomes are compared, so explanations are dropped as soon as each chunk is done
+        Map<String, AllocationResult> replayed = new HashMap<>(inputs.requests().size() * 2);
+        allocationEngine.execute(cycle, replay, chunk -> chunk.forEach(result -> {
+            result.setExplanation(null);
+            replayed.put(result.getRequest().getId(), result);
+        }));
+
+        Map<String, Outcome> originals = originalOutcomes(original);
+        int scoreChanges = 0;
+        int outcomeChanges = 0;
+        List<Difference> differences = new ArrayList<>();
+        for (RunInputs.Item item : inputs.requests()) {
+            AllocationResult result = replayed.get(item.id());
+            Outcome before = originals.get(item.id());
+            boolean monetary = item.category() == ResourceCategory.MONEY;
+            Outcome after = result == null ? null : new Outcome(
+                result.getStatus().name(),
+                monetary ? result.getAmountAllocated() : result.getQuantityAllocated());
+
+            boolean scoreChanged = result != null && item.score() != null
+                && Double.compare(item.score(), result.getScore()) != 0;
+            boolean outcomeChanged = !sameOutcome(before, after);
+            if (scoreChanged) {
+                scoreChanges++;
+            }
+            if (outcomeChanged) {
+                outcomeChanges++;
+            }
+            if ((scoreChanged || outcomeChanged) && differences.size() < MAX_DIFFERENCES) {
+                differences.add(new Difference(
+                    item.id(),
+                    item.title(),
+                    before != null ? before.status() : null,
+                    after != null ? after.status() : null,
+                    before != null ? before.allocated() : null,
+                    after != null ? after.allocated() : null,
+                    item.score(),
+                    result != null ? result.getScore() : null
+                ));
+            }
+        }
+
+        log.info("Replayed run {} ({} requests): {} outcome and {} score differences",
+            runId, inputs.requests().size(), outcomeChanges, scoreChanges);
+
+        return new Replay(
+            runId,
+            inputs.engineVersion(),
+            engineVersion,
+            inputs.journaledAt().toString(),
+            inputs.requests().size(),
+            replay.getStatus().name(),
+            replay.getErrorMessage(),
+            summary(original),
+            summary(replay),
+            outcomeChanges == 0 && scoreChanges == 0 && original.getStatus() == replay.getStatus(),
+            outcomeChanges,
+            scoreChanges,
+            differences
+        );
+    }
+
+    private AllocationCycle cycle(RunInputs inputs) {
+        String formula = inputs.scoringFormula() != null
+            ? inputs.scoringFormula()
+            : scoringEngine.weightedFormulaText(inputs.weights());
+        AllocationCycle cycle = AllocationCycle.builder()
+            .id(inputs.cycleId())
+            .name(inputs.cycleName())
+            .scoringFormula(formula)
+            .build();
+
+        Map<String, BudgetPool> budgetPools = new HashMap<>();
+        for (RunInputs.Pool pool : inputs.budgetPools()) {
+            BudgetPool budgetPool = BudgetPool.builder()
+                .id(pool.id())
+                .cycle(cycle)
+                .category(pool.category())
+                .totalAmount(pool.capacity())
+                .build();
+            cycle.getBudgetPools().add(budgetPool);
+            if (pool.id() != null) {
+                budgetPools.put(pool.id(), budgetPool);
+            }
+        }
+        for (RunInputs.Pool pool : inputs.budgetPools()) {
+            if (pool.parentId() != null) {
+                budgetPools.get(pool.id()).setParent(budgetPools.get(pool.parentId()));
+            }
+        }
+        for (RunInputs.Pool pool : inputs.resourcePools()) {
+            cycle.getResourcePools().add(ResourcePool.builder()
+                .cycle(cycle)
+                .category(pool.category())
+                .resourceType(pool.resourceType())
+                .totalQuantity(pool.capacity())
+                .build());
+        }
+        for (RunInputs.Item item : inputs.requests()) {
+            cycle.getRequests().add(Request.builder()
+                .id(item.id())
+                .cycle(cycle)
+                .title(item.title())
+                .category(item.category())
+                .resourceType(item.resourceType())
+                .amountRequested(item.amountRequested())
+                .minimumViableAllocation(item.minimumViableAllocation())
+                .quantityRequested(item.quantityRequested())
+                .minimumViableQuantity(item.minimumViableQuantity())
+                .priority(item.priority())
+                .urgencyDeadline(item.urgencyDeadline())
+                .impact(item.impact())
+                .risk(item.risk())
+                .strategic(item.strategic())
+                .dependencies(item.dependencies() != null ? new ArrayList<>(item.dependencies()) : new ArrayList<>())
+                .budgetPoolId(item.budgetPoolId())
+                .build());
+        }
+        return cycle;
+    }
+
+    /**
+     * Status and allocated amount or quantity per request, read from the archive once the run is archived
+     */
+    private Map<String, Outcome> originalOutcomes(AllocationRun run) {
+        Map<String, Outcome> outcomes = new HashMap<>();
+        if (run.getArchivedAt() != null) {
+            for (Map<String, Object> result : archiveService.readResults(run)) {
+                boolean monetary = ResourceCategory.MONEY.name().equals(result.get("category"));
+                Object allocated = result.get(monetary ? "amountAllocated" : "quantityAllocated");
+                outcomes.put((String) result.get("requestId"), new Outcome(
+                    (String) result.get("status"),
+                    allocated != null ? new BigDecimal(allocated.toString()) : null));
+            }
+            return outcomes;
+        }
+        List<Object[]> rows = transactionTemplate.execute(status -> resultRepository.findOutcomes(run.getId()));
+        for (Object[] row : rows) {
+            outcomes.put((String) row[0], new Outcome((String) row[1], (BigDecimal) row[2]));
+        }
+        return outcomes;
+    }
+
+    private static boolean sameOutcome(Outcome before, Outcome after) {
+        if (before == null || after == null) {
+            return before == after;
+        }
+        if (!Objects.equals(before.status(), after.status())) {
+            return false;
+        }
+        BigDecimal left = before.allocated() != null ? before.allocated() : BigDecimal.ZERO;
+        BigDecimal right = after.allocated() != null ? after.allocated() : BigDecimal.ZERO;
+        return left.compareTo(right) == 0;
+    }
+
+    private static Summary summary(AllocationRun run) {
+        return new Summary(
+            run.getStatus().name(),
+            run.getApprovedCount(),
+            run.getPartialCount(),
+            run.getDeferredCount(),
+            run.getDeniedCount(),
+            run.getTotalAllocated()
+        );
+    }
+
+    private record Outcome(String status, BigDecimal allocated) {
+    }
+
+    public record Replay(
+        String runId,
+        String journaledEngineVersion,
+        String replayEngineVersion,
+        String journaledAt,
+        int requests,
+        String status,
+        String errorMessage,
+        Summary original,
+        Summary replayed,
+        boolean identical,
+        int outcomeDifferences,
+        int scoreDifferences,
+        List<Difference> differences
+    ) {
+    }
+
+    public record Summary(
+        String status,
+        Integer approved,
+        Integer partial,
+        Integer deferred,
+        Integer denied,
+        BigDecimal totalAllocated
+    ) {
+    }
+
+    /**
+     * A request whose score or outcome came out differently; allocated is an amount for money, a quantity otherwise
+     */
+    public record Difference(
+        String requestId,
+        String title,
+        String originalStatus,
+        String replayedStatus,
+        BigDecimal originalAllocated,
+        BigDecimal replayedAllocated,
+        Double journaledScore,
+        Double replayedScore
+    ) {
+    }
+}
@@ -0,0 +1,193 @@
+package com.allocentra.ledger;
+
+import com.allocentra.allocator.BudgetTree;
+import com.allocentra.domain.AllocationRun;
+import com.allocentra.domain.ResourceCategory;
+import com.allocentra.domain.RunPoolSummary;
+import com.allocentra.repository.AllocationRunRepository;
+import com.allocentra.repository.RunPoolSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Applies a completed run's allocations to its cycle's pools.
+ *
+ * A commit reads the pools with their versions, rejects the whole commit if any
+ * pool would leave 0 &lt;= allocated &lt;= total, and then writes every pool of a
+ * table in one batched UPDATE guarded by the version it read. A pool changed in
+ * between fails the guard, the transaction rolls back and the commit starts over
+ * from a fresh read. Pools are updated in id order so concurrent commits never
+ * wait on each other in opposite orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunCommitService {
+
+    private static final String UPDATE_BUDGET_POOL =
+        "UPDATE budget_pools SET allocated_amount = allocated_amount + ?, version = version + 1 " +
+        "WHERE id = ? AND version = ?";
+
+    private static final String UPDATE_RESOURCE_POOL =
+        "UPDATE resource_pools SET allocated_quantity = allocated_quantity + ?, version = version + 1 " +
+        "WHERE id = ? AND version = ?";
+
+    private final AllocationRunRepository runRepository;
+    private final RunPoolSummaryRepository poolSummaryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${allocentra.commit.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${allocentra.commit.backoff-ms:25}")
+    private long backoffMs;
+
+    /**
+     * Commit a run, retrying when a pool changed concurrently
+     *
+     * @throws IllegalStateException if the run cannot be committed or would over-allocate a pool
+     * @throws OptimisticLockingFailureException if the pools kept changing for every attempt
+     */
+    public Commit commit(String runId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                int attempts = attempt;
+                return transactionTemplate.execute(status -> apply(runId, attempts));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("Pools changed while committing run {}, attempt {} of {}", runId, attempt, maxAttempts);
+                backOff(attempt);
+            }
+        }
+    }
+
+    private Commit apply(String runId, int attempt) {
+        AllocationRun run = runRepository.findById(runId)
+            .orElseThrow(() -> new RuntimeException("Run not found"));
+        String cycleId = run.getCycle().getId();
+
+        // Claims the commit first, so a second commit of the same run waits here and then finds it done
+        Instant now = Instant.now();
+        if (runRepository.markCommitted(runId, now) == 0) {
+            throw new IllegalStateException(run.getStatus() != AllocationRun.RunStatus.COMPLETED
+                ? "Only COMPLETED runs can be committed, run " + runId + " is " + run.getStatus()
+                : "Run " + runId + " was already committed");
+        }
+
+        List<RunPoolSummary> summaries = poolSummaryRepository.findByRunIdAndScopeOrderByPoolKey(
+            runId, RunPoolSummary.Scope.POOL);
+        if (summaries.isEmpty() && run.getTotalRequests() != null && run.getTotalRequests() > 0) {
+            throw new IllegalStateException("Run " + runId + " predates pool rollups; run the cycle again to commit it");
+        }
+
+        Map<String, PoolRow> pools = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT id, category, parent_id, total_amount, allocated_amount, version FROM budget_pools WHERE cycle_id = ?",
+            rs -> {
+                // A nested pool's rollup already covers its subtree, so each pool takes its own summary's delta
+                String key = rs.getString("parent_id") == null
+                    ? rs.getString("category")
+                    : BudgetTree.nestedKey(ResourceCategory.valueOf(rs.getString("category")), rs.getString("id"));
+                pools.put(key, new PoolRow(true, rs.getString("id"),
+                    rs.getBigDecimal("total_amount"), rs.getBigDecimal("allocated_amount"), rs.getLong("version")));
+            },
+            cycleId);
+        jdbcTemplate.query(
+            "SELECT id, category, resource_type, total_quantity, allocated_quantity, version FROM resource_pools WHERE cycle_id = ?",
+            rs -> {
+                pools.put(rs.getString("category") + ":" + rs.getString("resource_type"), new PoolRow(false,
+                    rs.getString("id"), rs.getBigDecimal("total_quantity"), rs.getBigDecimal("allocated_quantity"),
+                    rs.getLong("version")));
+            },
+            cycleId);
+
+        // Check every pool against chk_budget_amounts / chk_resource_quantities before writing any
+        List<PoolChange> changes = new ArrayList<>();
+        List<String> violations = new ArrayList<>();
+        Map<PoolRow, BigDecimal> deltas = new TreeMap<>(Comparator.comparing(PoolRow::id));
+        for (RunPoolSummary summary : summaries) {
+            BigDecimal delta = summary.getAllocated();
+            if (delta == null || delta.signum() == 0) {
+                continue;
+            }
+            PoolRow pool = pools.get(summary.getPoolKey());
+            if (pool == null) {
+                violations.add(summary.getPoolKey() + " no longer exists");
+                continue;
+            }
+            BigDecimal after = pool.allocated().add(delta);
+            if (after.signum() < 0 || after.compareTo(pool.total()) > 0) {
+                violations.add(summary.getPoolKey() + " would hold " + after.toPlainString()
+                    + " of " + pool.total().toPlainString());
+                continue;
+            }
+            deltas.put(pool, delta);
+            changes.add(new PoolChange(summary.getPoolKey(), pool.total(), pool.allocated(), delta, after));
+        }
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("Run " + runId + " cannot be committed: " + String.join("; ", violations));
+        }
+
+        List<Object[]> budgetUpdates = new ArrayList<>();
+        List<Object[]> resourceUpdates = new ArrayList<>();
+        deltas.forEach((pool, delta) -> (pool.budget() ? budgetUpdates : resourceUpdates)
+            .add(new Object[]{delta, pool.id(), pool.version()}));
+        applyBatch(UPDATE_BUDGET_POOL, budgetUpdates, runId);
+        applyBatch(UPDATE_RESOURCE_POOL, resourceUpdates, runId);
+
+        log.info("Committed run {} to {} pools of cycle {}", runId, changes.size(), cycleId);
+        return new Commit(runId, cycleId, now, attempt, changes);
+    }
+
+    private void applyBatch(String sql, List<Object[]> updates, String runId) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        for (int count : jdbcTemplate.batchUpdate(sql, updates)) {
+            if (count != 1) {
+                throw new OptimisticLockingFailureException("A pool changed while committing run " + runId);
+            }
+        }
+    }
+
+    private void backOff(int attempt) {
+        // Jittered and growing, so commits that collided once spread out instead of colliding again
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while committing", e);
+        }
+    }
+
+    private record PoolRow(boolean budget, String id, BigDecimal total, BigDecimal allocated, long version) {
+    }
+
+    /**
+     * A committed run and what it did to each pool
+     */
+    public record Commit(String runId, String cycleId, Instant committedAt, int attempts, List<PoolChange> pools) {
+    }
+
+    public record PoolChange(
+        String poolKey,
+        BigDecimal total,
+        BigDecimal allocatedBefore,
+        BigDecimal committed,
+        BigDecimal allocatedAfter
+    ) {
+    }
+}
@@ -0,0 +1,323 @@
+package com.allocentra.queue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Decides which claimable runs an instance takes, sharing run slots fairly between tenants.
+ *
+ * A tenant is a run's owner ({@code createdBy}) or the organization the owner is
+ * listed under in {@code allocentra.scheduler.tenants}. Tenants are served by
+ * deficit round robin: each visit credits a tenant its weight times the quantum,
+ * and the tenant's oldest runs are taken while their cost, the number of requests
+ * in the run's cycle plus a fixed overhead per run, fits in its credit. With the
+ * defaults a small run takes about one quantum and a cycle of 100,000 requests
+ * about a hundred, so slots are shared by work done, not by number of runs. A
+ * tenant that submits fifty runs at once thus gets its weighted share of slots,
+ * not all of them ahead of a tenant that submits one. Runs of small cycles may
+ * also use the instance's interactive slots, which larger runs never occupy, so
+ * they start promptly even while every regular slot holds a batch run.
+ *
+ * A tenant at its concurrency limit, or past its CPU-second budget for the current
+ * window, is skipped without being credited. Credits are kept per instance; the
+ * limits are checked against all instances through the run table.
+ */
+@Component
+@Slf4j
+public class FairShareScheduler {
+
+    public static final String ANONYMOUS = "anonymous";
+
+    private final long quantum;
+    private final long runOverhead;
+    private final long interactiveMaxRequests;
+    private final TenantLimits defaults;
+    private final Map<String, TenantLimits> tenants;
+    private final Map<String, String> tenantOfOwner = new HashMap<>();
+
+    // Round-robin state, guarded by this
+    private final ArrayDeque<String> ring = new ArrayDeque<>();
+    private final Map<String, Long> deficits = new HashMap<>();
+
+    /**
+     * Limits of one tenant; zero means no limit. Members are the owners whose runs count as the tenant's.
+     */
+    public record TenantLimits(Double weight, Integer maxConcurrentRuns, Long cpuSeconds, List<String> members) {
+
+        double effectiveWeight() {
+            return weight != null && weight > 0 ? weight : 1.0;
+        }
+    }
+
+    /**
+     * A claimable run and the number of requests in its cycle
+     */
+    public record Candidate(String runId, String createdBy, long requests) {
+    }
+
+    /**
+     * Claimable runs of one tenant and the requests in them, in total and up to a given run
+     */
+    public record Backlog(long runs, long requests, long runsAhead, long requestsAhead) {
+
+        Backlog plus(Backlog other) {
+            return new Backlog(runs + other.runs, requests + other.requests,
+                runsAhead + other.runsAhead, requestsAhead + other.requestsAhead);
+        }
+    }
+
+    /**
+     * A run to claim and the kind of slot it takes
+     */
+    public record Pick(Candidate candidate, String tenant, boolean interactive) {
+    }
+
+    public FairShareScheduler(
+        Environment environment,
+        @Value("${allocentra.scheduler.quantum:1000}") long quantum,
+        @Value("${allocentra.scheduler.run-overhead:1000}") long runOverhead,
+        @Value("${allocentra.scheduler.interactive-max-requests:1000}") long interactiveMaxRequests
+    ) {
+        this.quantum = Math.max(1, quantum);
+        this.runOverhead = Math.max(0, runOverhead);
+        this.interactiveMaxRequests = interactiveMaxRequests;
+        Binder binder = Binder.get(environment);
+        this.defaults = binder.bind("allocentra.scheduler.default", TenantLimits.class)
+            .orElse(new TenantLimits(1.0, 0, 0L, List.of()));
+        this.tenants = binder.bind("allocentra.scheduler.tenants", Bindable.mapOf(String.class, TenantLimits.class))
+            .orElse(Map.of());
+        tenants.forEach((tenant, limits) -> {
+            if (limits.members() != null) {
+                limits.members().forEach(owner -> tenantOfOwner.put(owner, tenant));
+            }
+        });
+        log.info("Fair-share scheduler with {} configured tenants, quantum {}", tenants.size(), this.quantum);
+    }
+
+    public String tenantOf(String createdBy) {
+        if (createdBy == null || createdBy.isBlank()) {
+            return ANONYMOUS;
+        }
+        return tenantOfOwner.getOrDefault(createdBy, createdBy);
+    }
+
+    public TenantLimits limits(String tenant) {
+        return tenants.getOrDefault(tenant, defaults);
+    }
+
+    public boolean isInteractive(Candidate candidate) {
+        return candidate.requests() <= interactiveMaxRequests;
+    }
+
+    private long cost(Candidate candidate) {
+        return candidate.requests() + runOverhead;
+    }
+
+    /**
+     * Runs to claim now, in the order they are dispatched, and the slot each takes.
+     * Each pick is charged to its tenant's credit.
+     *
+     * @param candidates     claimable runs, oldest first
+     * @param running        runs currently executing per tenant, on any instance
+     * @param held           tenants past their CPU-second budget
+     */
+    public synchronized List<Pick> select(
+        List<Candidate> candidates,
+        int regularSlots,
+        int interactiveSlots,
+        Map<String, Integer> running,
+        Set<String> held
+    ) {
+        Placement placement = new Placement(regularSlots, interactiveSlots, new HashMap<>(running), held);
+        return roundRobin(queues(candidates), ring, deficits, placement, regularSlots + interactiveSlots);
+    }
+
+    /**
+     * Give back the credit of a pick that another instance claimed first
+     */
+    public synchronized void refund(Pick pick) {
+        deficits.computeIfPresent(pick.tenant(), (tenant, deficit) -> deficit + cost(pick.candidate()));
+    }
+
+    /**
+     * Estimated 1-based dispatch position of a tenant's run if no other run were submitted,
+     * ignoring slot and concurrency limits. Until the run is dispatched its tenant is served
+     * the cost of its runs up to and including it; every other tenant is served that much
+     * times the ratio of their weights, and counted with the share of its runs that cost
+     * covers, runs it would reach at the same time as this one included. Runs of held
+     * tenants follow everyone else's.
+     *
+     * @param backlogs claimable runs per tenant, the run's own tenant included
+     */
+    public int position(String tenant, Map<String, Backlog> backlogs, Set<String> held) {
+        Backlog own = backlogs.get(tenant);
+        double served = cost(own.runsAhead(), own.requestsAhead()) / limits(tenant).effectiveWeight();
+        double position = own.runsAhead();
+        for (Map.Entry<String, Backlog> entry : backlogs.entrySet()) {
+            String other = entry.getKey();
+            Backlog backlog = entry.getValue();
+            if (other.equals(tenant) || held.contains(other) && !held.contains(tenant)) {
+                continue;
+            }
+            if (held.contains(tenant) && !held.contains(other)) {
+                position += backlog.runs();
+                continue;
+            }
+            double share = served * limits(other).effectiveWeight() / cost(backlog.runs(), backlog.requests());
+            position += Math.floor(backlog.runs() * Math.min(1.0, share));
+        }
+        return (int) Math.min(position, Integer.MAX_VALUE);
+    }
+
+    private long cost(long runs, long requests) {
+        return Math.max(1, requests + runs * runOverhead);
+    }
+
+    private Map<String, LinkedList<Candidate>> queues(List<Candidate> candidates) {
+        Map<String, LinkedList<Candidate>> queues = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            queues.computeIfAbsent(tenantOf(candidate.createdBy()), tenant -> new LinkedList<>()).add(candidate);
+        }
+        return queues;
+    }
+
+    /**
+     * Deficit round robin over the tenants' queues until {@code limit} runs are picked or
+     * no tenant can place another run
+     */
+    private List<Pick> roundRobin(
+        Map<String, LinkedList<Candidate>> queues,
+        ArrayDeque<String> ring,
+        Map<String, Long> deficits,
+        Placement placement,
+        int limit
+    ) {
+        // Tenants with nothing waiting leave the ring and lose their credit, as in plain DRR
+        ring.removeIf(tenant -> !queues.containsKey(tenant));
+        deficits.keySet().retainAll(queues.keySet());
+        for (String tenant : queues.keySet()) {
+            if (!deficits.containsKey(tenant)) {
+                deficits.put(tenant, 0L);
+                ring.addLast(tenant);
+            }
+        }
+
+        List<Pick> picks = new ArrayList<>();
+        while (picks.size() < limit) {
+            boolean picked = false;
+            for (int visit = ring.size(); visit > 0 && picks.size() < limit; visit--) {
+                String tenant = ring.pollFirst();
+                ring.addLast(tenant);
+                LinkedList<Candidate> queue = queues.get(tenant);
+                if (placement.next(tenant, queue) == null) {
+                    continue;
+                }
+
+                long deficit = deficits.get(tenant) + credit(tenant);
+                for (Candidate next = placement.next(tenant, queue);
+                     next != null && cost(next) <= deficit && picks.size() < limit;
+                     next = placement.next(tenant, queue)) {
+                    queue.remove(next);
+                    deficit -= cost(next);
+                    picks.add(placement.take(tenant, next));
+                    picked = true;
+                }
+                deficits.put(tenant, queue.isEmpty() ? 0L : deficit);
+            }
+            if (!picked && !fastForward(queues, deficits, placement)) {
+                break;
+            }
+        }
+        return picks;
+    }
+
+    /**
+     * Credit every tenant that could place a run with the rounds it takes the first of them
+     * to afford one, less the round about to be run. False when no tenant can place a run.
+     */
+    private boolean fastForward(Map<String, LinkedList<Candidate>> queues, Map<String, Long> deficits, Placement placement) {
+        long rounds = Long.MAX_VALUE;
+        for (Map.Entry<String, LinkedList<Candidate>> entry : queues.entrySet()) {
+            Candidate next = placement.next(entry.getKey(), entry.getValue());
+            if (next != null) {
+                long credit = credit(entry.getKey());
+                long missing = cost(next) - deficits.get(entry.getKey());
+                rounds = Math.min(rounds, (missing + credit - 1) / credit);
+            }
+        }
+        if (rounds == Long.MAX_VALUE) {
+            return false;
+        }
+        if (rounds > 1) {
+            for (Map.Entry<String, LinkedList<Candidate>> entry : queues.entrySet()) {
+                if (placement.next(entry.getKey(), entry.getValue()) != null) {
+                    deficits.merge(entry.getKey(), (rounds - 1) * credit(entry.getKey()), Long::sum);
+                }
+            }
+        }
+        return true;
+    }
+
+    private long credit(String tenant) {
+        return Math.max(1L, Math.round(quantum * limits(tenant).effectiveWeight()));
+    }
+
+    /**
+     * Free slots and per-tenant concurrency as picks are made
+     */
+    private final class Placement {
+        int regular;
+        int interactive;
+        final Map<String, Integer> running;
+        final Set<String> held;
+
+        Placement(int regular, int interactive, Map<String, Integer> running, Set<String> held) {
+            this.regular = regular;
+            this.interactive = interactive;
+            this.running = running;
+            this.held = held;
+        }
+
+        /**
+         * The tenant's oldest run that fits a free slot, or null when the tenant cannot start one now
+         */
+        Candidate next(String tenant, List<Candidate> queue) {
+            if (queue.isEmpty() || held.contains(tenant)) {
+                return null;
+            }
+            Integer maxConcurrent = limits(tenant).maxConcurrentRuns();
+            if (maxConcurrent != null && maxConcurrent > 0
+                    && running.getOrDefault(tenant, 0) >= maxConcurrent) {
+                return null;
+            }
+            if (regular > 0) {
+                return queue.get(0);
+            }
+            if (interactive > 0) {
+                for (Candidate candidate : queue) {
+                    if (isInteractive(candidate)) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
+        }
+
+        Pick take(String tenant, Candidate candidate) {
+            running.merge(tenant, 1, Integer::sum);
+            // Regular slots first, so interactive ones stay free for the next small run
+            if (regular > 0) {
+                regular--;
+                return new Pick(candidate, tenant, false);
+            }
+            interactive--;
+            return new Pick(candidate, tenant, true);
+        }
+    }
+}
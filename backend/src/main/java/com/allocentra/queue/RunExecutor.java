@@ -0,0 +1,134 @@
+package com.allocentra.queue;
+
+import com.allocentra.allocator.AllocationEngine;
+import com.allocentra.domain.AllocationCycle;
+import com.allocentra.domain.AllocationRun;
+import com.allocentra.domain.Request;
+import com.allocentra.journal.RunJournal;
+import com.allocentra.repository.AllocationRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes one claimed run and stores its results.
+ *
+ * The run and its cycle are read in one short transaction and allocated detached.
+ * Results are written by {@link RunResultWriter} a chunk at a time while later
+ * chunks are still being explained, and the run row is updated last, so readers
+ * only look for results once the run is COMPLETED. The inputs it ran with are
+ * appended to the {@link RunJournal} before that, so the run can be replayed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunExecutor {
+
+    private final AllocationRunRepository runRepository;
+    private final AllocationEngine allocationEngine;
+    private final RunResultWriter resultWriter;
+    private final RunJournal runJournal;
+    private final TransactionTemplate transactionTemplate;
+
+    public void execute(String runId, String owner) {
+        AllocationRun run = transactionTemplate.execute(status -> load(runId));
+        AllocationCycle cycle = run.getCycle();
+
+        // An earlier attempt may have written part of its results before it lost the run
+        if (!resultWriter.discard(runId, owner)) {
+            log.warn("Not executing run {}: lease was taken over", runId);
+            return;
+        }
+
+        AtomicBoolean leaseLost = new AtomicBoolean();
+        AllocationRun completed = allocationEngine.execute(cycle, run, chunk -> {
+            if (!resultWriter.write(runId, owner, chunk)) {
+                leaseLost.set(true);
+                throw new IllegalStateException("Lease on run " + runId + " was taken over");
+            }
+            // Written rows are never read back from memory
+            chunk.forEach(result -> result.setExplanation(null));
+        });
+
+        // Another instance reclaims the run if our lease expired mid-way; its results win
+        if (leaseLost.get()) {
+            log.warn("Discarding results of run {}: lease was taken over", runId);
+            return;
+        }
+        if (completed.getStatus() == AllocationRun.RunStatus.FAILED && !resultWriter.discard(runId, owner)) {
+            log.warn("Leaving results of run {} to its new owner: lease was taken over", runId);
+            return;
+        }
+        RunJournal.Position journaled = journal(cycle, completed, owner);
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> finish(completed, owner, journaled)))) {
+            log.warn("Discarding results of run {}: lease was taken over", runId);
+        }
+    }
+
+    /**
+     * The run with everything the engine reads, so it can run without a session
+     */
+    private AllocationRun load(String runId) {
+        AllocationRun run = runRepository.findById(runId)
+            .orElseThrow(() -> new RuntimeException("Run not found"));
+        AllocationCycle cycle = run.getCycle();
+        Hibernate.initialize(cycle);
+        Hibernate.initialize(cycle.getBudgetPools());
+        Hibernate.initialize(cycle.getResourcePools());
+        for (Request request : cycle.getRequests()) {
+            Hibernate.initialize(request.getDependencies());
+        }
+        Hibernate.initialize(run.getPoolSummaries());
+        return run;
+    }
+
+    /**
+     * Journal the inputs the run was executed with. A run whose inputs could not be
+     * journaled still completes; it just cannot be replayed.
+     */
+    private RunJournal.Position journal(AllocationCycle cycle, AllocationRun run, String owner) {
+        if (!runJournal.isEnabled()) {
+            return null;
+        }
+        try {
+            return runJournal.append(cycle, run, owner);
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to journal the inputs of run {}", run.getId(), e);
+            return null;
+        }
+    }
+
+    private boolean finish(AllocationRun done, String owner, RunJournal.Position journaled) {
+        if (!owner.equals(runRepository.lockClaimedBy(done.getId()))) {
+            return false;
+        }
+        AllocationRun run = runRepository.findById(done.getId()).orElseThrow();
+        run.setStatus(done.getStatus());
+        run.setStartedAt(done.getStartedAt());
+        run.setCompletedAt(done.getCompletedAt());
+        run.setExecutionTimeMs(done.getExecutionTimeMs());
+        run.setCpuTimeMs(done.getCpuTimeMs());
+        run.setProgress(done.getProgress());
+        run.setCurrentPhase(done.getCurrentPhase());
+        run.setErrorMessage(done.getErrorMessage());
+        run.setTotalRequests(done.getTotalRequests());
+        run.setApprovedCount(done.getApprovedCount());
+        run.setPartialCount(done.getPartialCount());
+        run.setDeferredCount(done.getDeferredCount());
+        run.setDeniedCount(done.getDeniedCount());
+        run.setTotalAllocated(done.getTotalAllocated());
+        run.setBudgetUtilization(done.getBudgetUtilization());
+        if (journaled != null) {
+            run.setInputJournalPath(journaled.segment());
+            run.setInputJournalOffset(journaled.offset());
+        }
+        run.getPoolSummaries().clear();
+        done.getPoolSummaries().forEach(run::addPoolSummary);
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+package com.allocentra.queue;
+
+import com.allocentra.config.DatabasePlatform;
+import com.allocentra.repository.AllocationRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Durable run queue stored in allocation_runs.
+ *
+ * A run is claimed by flipping it to RUNNING under a lease owned by one instance.
+ * The owner extends the lease with heartbeats; a lease that expires (the instance
+ * died or stalled) makes the run claimable again until it runs out of attempts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunJobQueue {
+
+    private final AllocationRunRepository runRepository;
+    private final DatabasePlatform databasePlatform;
+    private final FairShareScheduler scheduler;
+
+    @Value("${allocentra.queue.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${allocentra.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    // Runs considered per owner, so one owner's backlog cannot crowd out everyone else's
+    @Value("${allocentra.scheduler.candidate-window:500}")
+    private int candidateWindow;
+
+    @Value("${allocentra.scheduler.cpu-window-minutes:60}")
+    private long cpuWindowMinutes;
+
+    /**
+     * A claimed run and whether it took one of the instance's interactive slots
+     */
+    public record Claim(String runId, boolean interactive) {
+    }
+
+    /**
+     * Where a pending run stands: its estimated 1-based position among claimable runs, the tenant it is
+     * charged to, and why it is held back, if it is
+     */
+    public record QueuePosition(int position, int queued, String tenant, String throttled) {
+    }
+
+    /**
+     * Claim runs for {@code owner} to fill its free regular and interactive slots
+     */
+    @Transactional
+    public List<Claim> claim(String owner, int regularSlots, int interactiveSlots) {
+        Instant now = Instant.now();
+        Instant leaseExpiresAt = now.plus(Duration.ofSeconds(leaseSeconds));
+        
+        runRepository.failExpired(now, maxAttempts);
+        
+        List<FairShareScheduler.Candidate> candidates = candidates(now);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        List<FairShareScheduler.Pick> picks = scheduler.select(
+            candidates, regularSlots, interactiveSlots, runningByTenant(now), heldTenants(now).keySet());
+        if (picks.isEmpty()) {
+            return List.of();
+        }
+        
+        // PostgreSQL hands each claimer a disjoint set of rows; elsewhere the
+        // conditional update below is the only guard, so losers simply get fewer runs
+        Set<String> claimable = null;
+        if (databasePlatform.isPostgres()) {
+            claimable = new HashSet<>(runRepository.lockClaimable(
+                picks.stream().map(pick -> pick.candidate().runId()).toList(), now));
+        }
+        
+        List<Claim> claimed = new ArrayList<>(picks.size());
+        for (FairShareScheduler.Pick pick : picks) {
+            String runId = pick.candidate().runId();
+            if ((claimable == null || claimable.contains(runId))
+                    && runRepository.claim(runId, owner, now, leaseExpiresAt) == 1) {
+                claimed.add(new Claim(runId, pick.interactive()));
+            } else {
+                scheduler.refund(pick);
+            }
+        }
+        
+        if (!claimed.isEmpty()) {
+            log.debug("Instance {} claimed runs {}", owner, claimed);
+        }
+        return claimed;
+    }
+
+    /**
+     * Estimated position of a pending run in dispatch order, from per-owner totals of the
+     * queue rather than a replay of the scheduler, or empty when it is not waiting to be claimed
+     */
+    @Transactional(readOnly = true)
+    public Optional<QueuePosition> queuePosition(String runId) {
+        Instant now = Instant.now();
+        Optional<String> owner = runRepository.findClaimableOwner(runId, now);
+        if (owner.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        Map<String, FairShareScheduler.Backlog> backlogs = new HashMap<>();
+        for (Object[] row : runRepository.summarizeClaimableByOwner(runId, now)) {
+            backlogs.merge(scheduler.tenantOf((String) row[0]), new FairShareScheduler.Backlog(
+                ((Number) row[1]).longValue(), ((Number) row[2]).longValue(),
+                ((Number) row[3]).longValue(), ((Number) row[4]).longValue()), FairShareScheduler.Backlog::plus);
+        }
+        String tenant = scheduler.tenantOf(owner.get());
+        if (!backlogs.containsKey(tenant)) {
+            return Optional.empty();
+        }
+        
+        Map<String, String> held = heldTenants(now);
+        long queued = backlogs.values().stream().mapToLong(FairShareScheduler.Backlog::runs).sum();
+        return Optional.of(new QueuePosition(scheduler.position(tenant, backlogs, held.keySet()),
+            (int) Math.min(queued, Integer.MAX_VALUE), tenant, held.get(tenant)));
+    }
+
+    private List<FairShareScheduler.Candidate> candidates(Instant now) {
+        List<Object[]> rows = runRepository.findClaimableCandidates(now, candidateWindow);
+        List<FairShareScheduler.Candidate> candidates = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            candidates.add(new FairShareScheduler.Candidate(
+                (String) row[0], (String) row[1], ((Number) row[2]).longValue()));
+        }
+        return candidates;
+    }
+
+    private Map<String, Integer> runningByTenant(Instant now) {
+        Map<String, Integer> running = new HashMap<>();
+        for (Object[] row : runRepository.countRunningByOwner(now)) {
+            running.merge(scheduler.tenantOf((String) row[0]), ((Number) row[1]).intValue(), Integer::sum);
+        }
+        return running;
+    }
+
+    /**
+     * Tenants past their CPU-second budget for the current window, with the reason
+     */
+    private Map<String, String> heldTenants(Instant now) {
+        Map<String, Long> cpuMillis = new HashMap<>();
+        Instant since = now.minus(Duration.ofMinutes(cpuWindowMinutes));
+        for (Object[] row : runRepository.sumCpuTimeByOwnerSince(since)) {
+            cpuMillis.merge(scheduler.tenantOf((String) row[0]), ((Number) row[1]).longValue(), Long::sum);
+        }
+        
+        Map<String, String> held = new HashMap<>();
+        cpuMillis.forEach((tenant, millis) -> {
+            Long budget = scheduler.limits(tenant).cpuSeconds();
+            if (budget != null && budget > 0 && millis >= budget * 1000) {
+                held.put(tenant, String.format("CPU budget of %d s per %d min used (%.1f s)",
+                    budget, cpuWindowMinutes, millis / 1000.0));
+            }
+        });
+        return held;
+    }
+
+    /**
+     * Extend the leases of runs still executing on {@code owner}
+     */
+    @Transactional
+    public void heartbeat(String owner, Collection<String> runIds) {
+        if (runIds.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        int extended = runRepository.heartbeat(runIds, owner, now, now.plus(Duration.ofSeconds(leaseSeconds)));
+        if (extended < runIds.size()) {
+            log.warn("Instance {} lost the lease on {} of {} runs", owner, runIds.size() - extended, runIds.size());
+        }
+    }
+}
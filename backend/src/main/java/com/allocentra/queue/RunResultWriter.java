@@ -0,0 +1,155 @@
+package com.allocentra.queue;
+
+import com.allocentra.domain.AllocationResult;
+import com.allocentra.domain.DecisionExplanation;
+import com.allocentra.repository.AllocationResultRepository;
+import com.allocentra.repository.AllocationRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes a run's results a chunk at a time, each chunk in its own short transaction.
+ *
+ * Rows go out as JDBC batches rather than through the persistence context, so
+ * nothing accumulates between chunks. Every chunk first locks the run row and
+ * checks the lease, so an instance that lost its run writes nothing more, and
+ * the instance that took it over cannot claim it while a chunk is in flight.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RunResultWriter {
+
+    private static final String INSERT_RESULT =
+        "INSERT INTO allocation_results (id, run_id, request_id, status, amount_requested, amount_allocated, " +
+        "quantity_requested, quantity_allocated, score, rank, reason, constraint_violations, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_EXPLANATION =
+        "INSERT INTO decision_explanations (id, result_id, score_breakdown_json, reason_approved, reason_denied, " +
+        "reason_partial, reason_deferred, compared_to_request_id, compared_to_request_title, compared_to_score, " +
+        "score_difference, why_this_won, why_this_lost, score_needed, pool_increase_needed, largest_fundable_amount) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_SUGGESTION =
+        "INSERT INTO explanation_remediation (explanation_id, suggestion) VALUES (?, ?)";
+
+    private static final String UPDATE_REQUEST_SCORE =
+        "UPDATE requests SET score = ? WHERE id = ?";
+
+    private static final int DISCARD_BATCH_SIZE = 1000;
+
+    private final AllocationRunRepository runRepository;
+    private final AllocationResultRepository resultRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Write one chunk of results with their explanations and request scores
+     *
+     * @return false, with nothing written, when another instance holds the run's lease
+     */
+    public boolean write(String runId, String owner, List<AllocationResult> chunk) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!owner.equals(runRepository.lockClaimedBy(runId))) {
+                return false;
+            }
+            insert(runId, chunk);
+            return true;
+        }));
+    }
+
+    /**
+     * Remove whatever results of the run were written so far. Each batch is deleted
+     * with the run row locked, as chunks are written.
+     *
+     * @return false, with the remaining results left alone, when another instance holds the run's lease
+     */
+    public boolean discard(String runId, String owner) {
+        int deleted = 0;
+        Integer removed;
+        do {
+            removed = transactionTemplate.execute(status -> {
+                if (!owner.equals(runRepository.lockClaimedBy(runId))) {
+                    return null;
+                }
+                List<String> resultIds = resultRepository.findIdBatch(runId, DISCARD_BATCH_SIZE);
+                if (!resultIds.isEmpty()) {
+                    resultRepository.deleteRemediationByResultIds(resultIds);
+                    resultRepository.deleteExplanationsByResultIds(resultIds);
+                    resultRepository.deleteByIds(resultIds);
+                }
+                return resultIds.size();
+            });
+            if (removed == null) {
+                return false;
+            }
+            deleted += removed;
+        } while (removed == DISCARD_BATCH_SIZE);
+        if (deleted > 0) {
+            log.info("Discarded {} partial results of run {}", deleted, runId);
+        }
+        return true;
+    }
+
+    private void insert(String runId, List<AllocationResult> chunk) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> results = new ArrayList<>(chunk.size());
+        List<Object[]> explanations = new ArrayList<>(chunk.size());
+        List<Object[]> suggestions = new ArrayList<>();
+        List<Object[]> scores = new ArrayList<>(chunk.size());
+
+        for (AllocationResult result : chunk) {
+            if (result.getId() == null) {
+                result.setId(UUID.randomUUID().toString());
+            }
+            results.add(new Object[]{
+                result.getId(), runId, result.getRequest().getId(), result.getStatus().name(),
+                result.getAmountRequested(), result.getAmountAllocated(),
+                result.getQuantityRequested(), result.getQuantityAllocated(),
+                result.getScore(), result.getRank(), result.getReason(), result.getViolationMask(), now
+            });
+            scores.add(new Object[]{result.getScore(), result.getRequest().getId()});
+
+            DecisionExplanation explanation = result.getExplanation();
+            if (explanation != null) {
+                if (explanation.getId() == null) {
+                    explanation.setId(UUID.randomUUID().toString());
+                }
+                explanations.add(new Object[]{
+                    explanation.getId(), result.getId(), explanation.getScoreBreakdownJson(),
+                    explanation.getReasonApproved(), explanation.getReasonDenied(),
+                    explanation.getReasonPartial(), explanation.getReasonDeferred(),
+                    explanation.getComparedToRequestId(), explanation.getComparedToRequestTitle(),
+                    explanation.getComparedToScore(), explanation.getScoreDifference(),
+                    explanation.getWhyThisWon(), explanation.getWhyThisLost(), explanation.getScoreNeeded(),
+                    explanation.getPoolIncreaseNeeded(), explanation.getLargestFundableAmount()
+                });
+                for (String suggestion : explanation.getWhatWouldChange()) {
+                    suggestions.add(new Object[]{explanation.getId(), suggestion});
+                }
+            }
+        }
+
+        // Parents before children, so the foreign keys hold at every statement
+        batch(INSERT_RESULT, results);
+        batch(INSERT_EXPLANATION, explanations);
+        batch(INSERT_SUGGESTION, suggestions);
+        batch(UPDATE_REQUEST_SCORE, scores);
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.allocentra.queue;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the run queue and executes claimed runs on this instance.
+ *
+ * Each instance claims only as many runs as it has free execution slots, so
+ * adding instances adds throughput without any instance hoarding work. A few
+ * interactive slots, on threads of their own, only ever run small cycles, so
+ * those start promptly while the regular slots are busy with large ones.
+ */
+@Component
+@Slf4j
+public class RunWorker {
+
+    private final RunJobQueue jobQueue;
+    private final RunExecutor runExecutor;
+    private final String instanceId;
+    private final int maxConcurrentRuns;
+    private final int interactiveSlots;
+    private final ExecutorService executor;
+    private final ExecutorService interactiveExecutor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String> interactiveInFlight = ConcurrentHashMap.newKeySet();
+
+    public RunWorker(
+        RunJobQueue jobQueue,
+        RunExecutor runExecutor,
+        @Value("${allocentra.queue.instance-id:}") String instanceId,
+        @Value("${allocentra.queue.max-concurrent-runs:0}") int maxConcurrentRuns,
+        @Value("${allocentra.scheduler.interactive-slots:1}") int interactiveSlots
+    ) {
+        this.jobQueue = jobQueue;
+        this.runExecutor = runExecutor;
+        this.instanceId = instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+        this.maxConcurrentRuns = maxConcurrentRuns > 0
+            ? maxConcurrentRuns
+            : Runtime.getRuntime().availableProcessors();
+        this.interactiveSlots = Math.max(0, interactiveSlots);
+        
+        this.executor = Executors.newFixedThreadPool(this.maxConcurrentRuns, threads("run-worker-"));
+        this.interactiveExecutor = this.interactiveSlots > 0
+            ? Executors.newFixedThreadPool(this.interactiveSlots, threads("run-worker-interactive-"))
+            : null;
+        log.info("Run worker {} started with {} slots and {} interactive slots",
+            this.instanceId, this.maxConcurrentRuns, this.interactiveSlots);
+    }
+
+    private static ThreadFactory threads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${allocentra.queue.poll-interval-ms:1000}")
+    public void poll() {
+        int freeSlots = maxConcurrentRuns - inFlight.size();
+        int freeInteractive = interactiveSlots - interactiveInFlight.size();
+        if (freeSlots <= 0 && freeInteractive <= 0) {
+            return;
+        }
+        
+        List<RunJobQueue.Claim> claimed = jobQueue.claim(instanceId, Math.max(0, freeSlots), Math.max(0, freeInteractive));
+        for (RunJobQueue.Claim claim : claimed) {
+            String runId = claim.runId();
+            Set<String> lane = claim.interactive() ? interactiveInFlight : inFlight;
+            lane.add(runId);
+            (claim.interactive() ? interactiveExecutor : executor).execute(() -> {
+                try {
+                    runExecutor.execute(runId, instanceId);
+                } catch (Exception e) {
+                    log.error("Run {} failed on instance {}", runId, instanceId, e);
+                } finally {
+                    lane.remove(runId);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${allocentra.queue.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        Set<String> running = new HashSet<>(inFlight);
+        running.addAll(interactiveInFlight);
+        jobQueue.heartbeat(instanceId, running);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished runs keep their lease until it expires and another instance picks them up
+        executor.shutdownNow();
+        if (interactiveExecutor != null) {
+            interactiveExecutor.shutdownNow();
+        }
+    }
+}
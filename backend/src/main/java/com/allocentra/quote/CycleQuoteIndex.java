@@ -0,0 +1,77 @@
+package com.allocentra.quote;
+
+import com.allocentra.scoring.ScoringFormula;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Live ranking of one cycle's requests: one tree over all scores for ranks and
+ * one per pool for the demand queued ahead. Scores are only valid for
+ * {@link #evaluationDate}, so the index is rebuilt when the day changes.
+ */
+final class CycleQuoteIndex {
+
+    final LocalDate evaluationDate;
+    final Map<String, Long> capacities;
+    final ScoringFormula formula;
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Cycle fingerprint the index reflects; a different value means another writer changed the cycle
+    volatile Long fingerprint;
+
+    private final OrderStatisticTree ranking = new OrderStatisticTree();
+    private final Map<String, OrderStatisticTree> pools = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long nextSequence;
+
+    CycleQuoteIndex(LocalDate evaluationDate, Map<String, Long> capacities, ScoringFormula formula, Long fingerprint) {
+        this.evaluationDate = evaluationDate;
+        this.capacities = capacities;
+        this.formula = formula;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Insert a request, or move it if it is already indexed. Caller holds the write lock.
+     */
+    void put(String requestId, double score, String poolKey, long amount) {
+        remove(requestId);
+        Entry entry = new Entry(score, nextSequence++, poolKey, amount);
+        entries.put(requestId, entry);
+        ranking.insert(score, entry.sequence, 0L);
+        pools.computeIfAbsent(poolKey, key -> new OrderStatisticTree()).insert(score, entry.sequence, amount);
+    }
+
+    void remove(String requestId) {
+        Entry entry = entries.remove(requestId);
+        if (entry != null) {
+            ranking.remove(entry.score, entry.sequence);
+            pools.get(entry.poolKey).remove(entry.score, entry.sequence);
+        }
+    }
+
+    int size() {
+        return ranking.size();
+    }
+
+    int countAhead(double score) {
+        return ranking.countAhead(score);
+    }
+
+    int countAheadInPool(String poolKey, double score) {
+        OrderStatisticTree pool = pools.get(poolKey);
+        return pool == null ? 0 : pool.countAhead(score);
+    }
+
+    long demandAhead(String poolKey, double score) {
+        OrderStatisticTree pool = pools.get(poolKey);
+        return pool == null ? 0L : pool.sumAhead(score);
+    }
+
+    private record Entry(double score, long sequence, String poolKey, long amount) {
+    }
+}
@@ -0,0 +1,161 @@
+package com.allocentra.quote;
+
+import java.util.SplittableRandom;
+
+/**
+ * Treap ordered by score, highest first, with subtree counts and amount sums.
+ *
+ * Equal scores are ordered by insertion sequence, the way the engine's stable sort
+ * keeps earlier requests ahead. Insert, remove and both prefix queries are O(log n)
+ * expected. Not thread-safe.
+ */
+final class OrderStatisticTree {
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    int size() {
+        return size(root);
+    }
+
+    long sum() {
+        return sum(root);
+    }
+
+    void insert(double score, long sequence, long amount) {
+        root = insert(root, new Node(score, sequence, amount, random.nextInt()));
+    }
+
+    void remove(double score, long sequence) {
+        root = remove(root, score, sequence);
+    }
+
+    /**
+     * Entries ranked ahead of a newcomer with this score, ties included
+     */
+    int countAhead(double score) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.score >= score) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Amount held by the entries counted in {@link #countAhead(double)}
+     */
+    long sumAhead(double score) {
+        long total = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.score >= score) {
+                total += sum(node.left) + node.amount;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return total;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (before(added.score, added.sequence, node)) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        return update(node);
+    }
+
+    private static Node remove(Node node, double score, long sequence) {
+        if (node == null) {
+            return null;
+        }
+        if (node.score == score && node.sequence == sequence) {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = remove(node.right, score, sequence);
+            } else {
+                node = rotateLeft(node);
+                node.left = remove(node.left, score, sequence);
+            }
+        } else if (before(score, sequence, node)) {
+            node.left = remove(node.left, score, sequence);
+        } else {
+            node.right = remove(node.right, score, sequence);
+        }
+        return update(node);
+    }
+
+    private static boolean before(double score, long sequence, Node node) {
+        return score > node.score || (score == node.score && sequence < node.sequence);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = update(node);
+        return update(left);
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = update(node);
+        return update(right);
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + 1 + size(node.right);
+        node.sum = sum(node.left) + node.amount + sum(node.right);
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static long sum(Node node) {
+        return node == null ? 0L : node.sum;
+    }
+
+    private static final class Node {
+        final double score;
+        final long sequence;
+        final long amount;
+        final int priority;
+        int size = 1;
+        long sum;
+        Node left;
+        Node right;
+
+        Node(double score, long sequence, long amount, int priority) {
+            this.score = score;
+            this.sequence = sequence;
+            this.amount = amount;
+            this.priority = priority;
+            this.sum = amount;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.allocentra.quote;
+
+import com.allocentra.allocator.AllocationEngine;
+import com.allocentra.allocator.BudgetTree;
+import com.allocentra.allocator.InputFingerprintService;
+import com.allocentra.domain.*;
+import com.allocentra.repository.AllocationCycleRepository;
+import com.allocentra.repository.RequestRepository;
+import com.allocentra.scoring.ScoringEngine;
+import com.allocentra.scoring.ScoringFormula;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers "where would this request land" for ACTIVE cycles without running the engine.
+ *
+ * Each cycle's index is built on the first quote and then kept current as requests
+ * are saved through this instance. A quote checks the cycle fingerprint first, so
+ * edits made through other instances trigger a rebuild instead of a stale answer.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QuoteService {
+
+    private static final int AMOUNT_SCALE = 2;
+
+    private final AllocationCycleRepository cycleRepository;
+    private final RequestRepository requestRepository;
+    private final ScoringEngine scoringEngine;
+    private final InputFingerprintService fingerprintService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, CycleQuoteIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Projected rank, demand ahead and likely outcome of a draft request
+     */
+    public Quote quote(String cycleId, Request draft) {
+        CycleQuoteIndex index = index(cycleId);
+        double score = scoringEngine.calculateScore(draft, index.evaluationDate, index.formula);
+        String poolKey = AllocationEngine.poolKey(draft);
+
+        int ahead;
+        int aheadInPool;
+        long demandAhead;
+        int total;
+        index.lock.readLock().lock();
+        try {
+            ahead = index.countAhead(score);
+            aheadInPool = index.countAheadInPool(poolKey, score);
+            demandAhead = index.demandAhead(poolKey, score);
+            total = index.size();
+        } finally {
+            index.lock.readLock().unlock();
+        }
+
+        boolean monetary = draft.getCategory() == ResourceCategory.MONEY;
+        long capacity = index.capacities.getOrDefault(poolKey, 0L);
+        long remaining = Math.max(0L, capacity - demandAhead);
+        long requested = scaled(monetary ? draft.getAmountRequested() : draft.getQuantityRequested());
+        BigDecimal minimum = monetary ? draft.getMinimumViableAllocation() : draft.getMinimumViableQuantity();
+
+        // Everything ahead in the pool is assumed funded in full, so this errs on the cautious side
+        Request.RequestStatus likelyStatus;
+        if (remaining >= requested) {
+            likelyStatus = Request.RequestStatus.APPROVED;
+        } else if (minimum != null && remaining >= scaled(minimum)) {
+            likelyStatus = Request.RequestStatus.PARTIAL;
+        } else {
+            likelyStatus = Request.RequestStatus.DENIED;
+        }
+
+        return new Quote(
+            score,
+            ahead + 1,
+            total + 1,
+            poolKey,
+            aheadInPool,
+            unscaled(demandAhead),
+            unscaled(capacity),
+            unscaled(remaining),
+            likelyStatus,
+            index.evaluationDate
+        );
+    }
+
+    /**
+     * Fold a saved request into its cycle's index, if one is loaded
+     */
+    public void requestSaved(Request request) {
+        String cycleId = request.getCycle().getId();
+        CycleQuoteIndex index = indexes.get(cycleId);
+        if (index == null) {
+            return;
+        }
+        if (!index.evaluationDate.equals(LocalDate.now())) {
+            indexes.remove(cycleId, index);
+            return;
+        }
+
+        double score = scoringEngine.calculateScore(request, index.evaluationDate, index.formula);
+        index.lock.writeLock().lock();
+        try {
+            index.put(request.getId(), score, AllocationEngine.poolKey(request), requestedAmount(request));
+            index.fingerprint = cycleRepository.findInputFingerprintById(cycleId);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private CycleQuoteIndex index(String cycleId) {
+        CycleQuoteIndex index = indexes.get(cycleId);
+        if (isCurrent(index, cycleId)) {
+            return index;
+        }
+
+        synchronized (this) {
+            index = indexes.get(cycleId);
+            if (isCurrent(index, cycleId)) {
+                return index;
+            }
+            CycleQuoteIndex built = transactionTemplate.execute(status -> build(cycleId));
+            indexes.put(cycleId, built);
+            log.debug("Built quote index for cycle {} with {} requests", cycleId, built.size());
+            return built;
+        }
+    }
+
+    private boolean isCurrent(CycleQuoteIndex index, String cycleId) {
+        return index != null
+            && index.evaluationDate.equals(LocalDate.now())
+            && Objects.equals(index.fingerprint, cycleRepository.findInputFingerprintById(cycleId));
+    }
+
+    private CycleQuoteIndex build(String cycleId) {
+        AllocationCycle cycle = cycleRepository.findById(cycleId)
+            .orElseThrow(() -> new RuntimeException("Cycle not found"));
+        if (cycle.getStatus() != AllocationCycle.CycleStatus.ACTIVE) {
+            throw new IllegalStateException("Quotes are only available for ACTIVE cycles");
+        }
+
+        Map<String, Long> capacities = new HashMap<>();
+        // A nested pool is quoted against its effective capacity, without its siblings' demand
+        BudgetTree.of(cycle.getBudgetPools()).effectiveCapacities()
+            .forEach((key, capacity) -> capacities.put(key, scaled(capacity)));
+        for (ResourcePool pool : cycle.getResourcePools()) {
+            capacities.put(pool.getCategory().name() + ":" + pool.getResourceType(), scaled(pool.getTotalQuantity()));
+        }
+
+        LocalDate today = LocalDate.now();
+        ScoringFormula formula = scoringEngine.formulaFor(cycle);
+        CycleQuoteIndex index = new CycleQuoteIndex(today, capacities, formula, fingerprintService.cycleFingerprint(cycleId));
+        for (Request request : requestRepository.findByCycleId(cycleId)) {
+            index.put(request.getId(), scoringEngine.calculateScore(request, today, formula),
+                AllocationEngine.poolKey(request), requestedAmount(request));
+        }
+        return index;
+    }
+
+    private static long requestedAmount(Request request) {
+        return scaled(request.getCategory() == ResourceCategory.MONEY
+            ? request.getAmountRequested()
+            : request.getQuantityRequested());
+    }
+
+    private static long scaled(BigDecimal value) {
+        if (value == null) {
+            return 0L;
+        }
+        return value.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal unscaled(long value) {
+        return BigDecimal.valueOf(value, AMOUNT_SCALE);
+    }
+
+    /**
+     * Projection for a draft request against the cycle as it stands
+     */
+    public record Quote(
+        double score,
+        int projectedRank,
+        int rankedOutOf,
+        String poolKey,
+        int requestsAheadInPool,
+        BigDecimal demandAhead,
+        BigDecimal poolCapacity,
+        BigDecimal remainingAfterAhead,
+        Request.RequestStatus likelyStatus,
+        LocalDate evaluationDate
+    ) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.allocentra.ratelimit;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+
+/**
+ * Endpoints grouped by what they cost the server, each with its own rate limit.
+ * Paths are relative to /api.
+ */
+public enum EndpointClass {
+
+    /**
+     * Queue an allocation run or replay one: a full engine pass over a cycle
+     */
+    RUN("run", new RateLimiter.Limit(50, 30, 10), List.of("/runs", "/runs/*/replay")),
+
+    /**
+     * Evaluate against a cycle without queuing a run
+     */
+    SIMULATION("simulation", new RateLimiter.Limit(100, 50, 10), List.of("/cycles/*/simulations", "/cycles/*/quote")),
+
+    /**
+     * Any other create, update or commit
+     */
+    WRITE("write", new RateLimiter.Limit(200, 100, 2), List.of()),
+
+    /**
+     * Reads
+     */
+    READ("read", new RateLimiter.Limit(100, 100, 1), List.of());
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private final String property;
+    private final RateLimiter.Limit defaultLimit;
+    private final List<String> postPatterns;
+
+    EndpointClass(String property, RateLimiter.Limit defaultLimit, List<String> postPatterns) {
+        this.property = property;
+        this.defaultLimit = defaultLimit;
+        this.postPatterns = postPatterns;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    RateLimiter.Limit defaultLimit() {
+        return defaultLimit;
+    }
+
+    public static EndpointClass of(String method, String path) {
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return READ;
+        }
+        if ("POST".equals(method)) {
+            for (EndpointClass endpointClass : values()) {
+                for (String pattern : endpointClass.postPatterns) {
+                    if (PATHS.match(pattern, path)) {
+                        return endpointClass;
+                    }
+                }
+            }
+        }
+        return WRITE;
+    }
+}
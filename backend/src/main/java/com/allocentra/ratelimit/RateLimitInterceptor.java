@@ -0,0 +1,98 @@
+package com.allocentra.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits or refuses every API call against its client's bucket for the endpoint's class.
+ *
+ * A client is the remote address, or the value of the configured client header when
+ * the server sits behind a proxy that sets one. Of a list such as X-Forwarded-For only
+ * the entry appended by the outermost trusted proxy is used, counted from the right,
+ * since the entries before it come from the caller. Every answer carries the
+ * RateLimit-Limit, RateLimit-Remaining and RateLimit-Reset headers of its class, in
+ * requests and seconds; a refused call gets 429 with Retry-After before any
+ * database or engine work is done. The health check is never limited.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+    private static final String API_PREFIX = "/api";
+
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    @Value("${allocentra.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${allocentra.rate-limit.client-header:}")
+    private String clientHeader;
+
+    @Value("${allocentra.rate-limit.trusted-proxies:1}")
+    private int trustedProxies;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (enabled) {
+            registry.addInterceptor(this)
+                .addPathPatterns(API_PREFIX + "/**")
+                .excludePathPatterns(API_PREFIX + "/health");
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod(),
+            path.startsWith(API_PREFIX) ? path.substring(API_PREFIX.length()) : path);
+        RateLimiter.Decision decision = rateLimiter.acquire(client(request), endpointClass);
+
+        response.setHeader("RateLimit-Limit", Long.toString(decision.limit().requests()));
+        response.setHeader("RateLimit-Remaining", Long.toString(decision.remaining()));
+        response.setHeader("RateLimit-Reset", Long.toString(seconds(decision.resetNanos())));
+        if (decision.allowed()) {
+            return true;
+        }
+
+        long retryAfter = seconds(decision.retryAfterNanos());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of(
+            "error", "RATE_LIMITED",
+            "message", "Too many " + endpointClass.property() + " requests; retry in " + retryAfter + " s"
+        ));
+        return false;
+    }
+
+    private String client(HttpServletRequest request) {
+        if (!clientHeader.isBlank()) {
+            String value = request.getHeader(clientHeader);
+            if (value != null && !value.isBlank()) {
+                // Each proxy appends the address it received from, so only the last entries can be trusted
+                String[] hops = value.split(",");
+                return hops[Math.max(0, hops.length - Math.max(1, trustedProxies))].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(0, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,129 @@
+package com.allocentra.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per client and endpoint class, held in memory.
+ *
+ * Each bucket is a single {@link AtomicLong}: the instant at which it will be full
+ * again, as in the generic cell rate algorithm. Taking tokens moves that instant
+ * forward by the tokens' refill time, with one compare-and-set and no lock, and a
+ * request is refused when the instant would lie further ahead than the burst
+ * allows. Refill needs no timer, since it is only the clock passing that instant.
+ * A bucket that has been full for the idle time is dropped by a periodic sweep.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    private final Map<EndpointClass, Limit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<Key, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long idleNanos;
+
+    /**
+     * Refill rate and capacity of a class's buckets, in tokens, and what one request takes
+     */
+    public record Limit(long tokensPerMinute, long burst, long cost) {
+
+        long nanosPerToken() {
+            return TimeUnit.MINUTES.toNanos(1) / tokensPerMinute;
+        }
+
+        long capacityNanos() {
+            return burst * nanosPerToken();
+        }
+
+        /**
+         * Requests a full bucket admits at once
+         */
+        public long requests() {
+            return burst / cost;
+        }
+    }
+
+    /**
+     * Outcome of taking a request's tokens. Remaining is in requests of the same class.
+     */
+    public record Decision(boolean allowed, Limit limit, long remaining, long resetNanos, long retryAfterNanos) {
+    }
+
+    private record Key(String client, EndpointClass endpointClass) {
+    }
+
+    public RateLimiter(Environment environment, @Value("${allocentra.rate-limit.idle-seconds:600}") long idleSeconds) {
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        Binder binder = Binder.get(environment);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            Limit limit = binder.bind("allocentra.rate-limit." + endpointClass.property(), Limit.class)
+                .orElse(endpointClass.defaultLimit());
+            if (limit.tokensPerMinute() <= 0 || limit.cost() <= 0 || limit.cost() > limit.burst()) {
+                throw new IllegalStateException("Rate limit for " + endpointClass.property()
+                    + " needs positive tokens-per-minute and a cost no larger than its burst");
+            }
+            limits.put(endpointClass, limit);
+        }
+        log.info("Rate limits {}", limits);
+    }
+
+    public Limit limit(EndpointClass endpointClass) {
+        return limits.get(endpointClass);
+    }
+
+    /**
+     * Take one request's tokens from the client's bucket for the class, if it has enough
+     */
+    public Decision acquire(String client, EndpointClass endpointClass) {
+        Limit limit = limits.get(endpointClass);
+        long interval = limit.nanosPerToken();
+        long capacity = limit.capacityNanos();
+        long charge = limit.cost() * interval;
+
+        Key key = new Key(client, endpointClass);
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt == null) {
+            fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        }
+
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            // A bucket that filled up in the past is simply full now
+            long base = current - now < 0 ? now : current;
+            long next = base + charge;
+            if (next - now > capacity) {
+                long available = (capacity - (base - now)) / interval;
+                return new Decision(false, limit, available / limit.cost(), base - now, next - capacity - now);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                long available = (capacity - (next - now)) / interval;
+                return new Decision(true, limit, available / limit.cost(), next - now, 0);
+            }
+        }
+    }
+
+    /**
+     * Drop buckets that have been full for the idle time. A request racing with the
+     * removal may land on the dropped bucket, which at worst forgives that one request.
+     */
+    @Scheduled(fixedDelayString = "${allocentra.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> now - entry.getValue().get() > idleNanos);
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate-limit buckets, {} left", evicted, buckets.size());
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.allocentra.repository;
 
 import com.allocentra.domain.AllocationCycle;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AllocationCycleRepository extends JpaRepository<AllocationCycle, String> {
     
     List<AllocationCycle> findByStatus(AllocationCycle.CycleStatus status);
     
+    long countByStatus(AllocationCycle.CycleStatus status);
+    
     @Query("SELECT c FROM AllocationCycle c LEFT JOIN FETCH c.budgetPools LEFT JOIN FETCH c.resourcePools WHERE c.id = :id")
     AllocationCycle findByIdWithPools(String id);
+
+    @Query("SELECT c.inputFingerprint FROM AllocationCycle c WHERE c.id = :id")
+    Long findInputFingerprintById(String id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM AllocationCycle c WHERE c.id = :id")
+    Optional<AllocationCycle> findByIdForUpdate(String id);
 }
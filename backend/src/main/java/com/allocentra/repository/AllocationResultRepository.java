@@ -0,0 +1,60 @@
+package com.allocentra.repository;
+
+import com.allocentra.domain.AllocationResult;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AllocationResultRepository extends JpaRepository<AllocationResult, String> {
+
+    /**
+     * Next page of a run's results after {@code afterRank}, keyset-paged so deep pages stay cheap
+     */
+    @Query("SELECT r FROM AllocationResult r JOIN FETCH r.request LEFT JOIN FETCH r.explanation " +
+        "WHERE r.run.id = :runId AND r.rank > :afterRank ORDER BY r.rank")
+    List<AllocationResult> findPageAfterRank(String runId, int afterRank, Pageable pageable);
+
+    /**
+     * Like {@link #findPageAfterRank}, keeping only results with any of the violation bits in {@code mask}
+     */
+    @Query("SELECT r FROM AllocationResult r JOIN FETCH r.request LEFT JOIN FETCH r.explanation " +
+        "WHERE r.run.id = :runId AND r.rank > :afterRank AND bitand(r.violationMask, cast(:mask as Integer)) <> 0 ORDER BY r.rank")
+    List<AllocationResult> findPageAfterRankWithViolations(String runId, int afterRank, int mask, Pageable pageable);
+
+    @Query("SELECT r FROM AllocationResult r JOIN FETCH r.request LEFT JOIN FETCH r.explanation " +
+        "WHERE r.run.id = :runId AND r.request.id = :requestId")
+    Optional<AllocationResult> findByRunIdAndRequestId(String runId, String requestId);
+
+    /**
+     * Request id, status and allocated amount (money) or quantity (resources) of each of a run's results
+     */
+    @Query(value = "SELECT r.request_id, r.status, CASE WHEN q.category = 'MONEY' " +
+        "THEN r.amount_allocated ELSE r.quantity_allocated END " +
+        "FROM allocation_results r JOIN requests q ON q.id = r.request_id WHERE r.run_id = :runId", nativeQuery = true)
+    List<Object[]> findOutcomes(String runId);
+
+    @Query(value = "SELECT id FROM allocation_results WHERE run_id = :runId LIMIT :limit", nativeQuery = true)
+    List<String> findIdBatch(String runId, int limit);
+
+    // Child rows are removed explicitly, batch by batch, instead of through ON DELETE CASCADE
+
+    @Modifying
+    @Query(value = "DELETE FROM explanation_remediation WHERE explanation_id IN " +
+        "(SELECT id FROM decision_explanations WHERE result_id IN (:resultIds))", nativeQuery = true)
+    int deleteRemediationByResultIds(Collection<String> resultIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM decision_explanations WHERE result_id IN (:resultIds)", nativeQuery = true)
+    int deleteExplanationsByResultIds(Collection<String> resultIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM allocation_results WHERE id IN (:resultIds)", nativeQuery = true)
+    int deleteByIds(Collection<String> resultIds);
+}
@@ -1,11 +1,20 @@
 package com.allocentra.repository;
 
+import com.allocentra.domain.AllocationCycle;
 import com.allocentra.domain.AllocationRun;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AllocationRunRepository extends JpaRepository<AllocationRun, String> {
@@ -14,6 +23,123 @@ public interface AllocationRunRepository extends JpaRepository<AllocationRun, St
     
     List<AllocationRun> findByStatusOrderByCreatedAtDesc(AllocationRun.RunStatus status);
     
-    @Query("SELECT r FROM AllocationRun r LEFT JOIN FETCH r.results WHERE r.id = :id")
+    @Query("SELECT r FROM AllocationRun r LEFT JOIN FETCH r.results res LEFT JOIN FETCH res.request WHERE r.id = :id")
     AllocationRun findByIdWithResults(String id);
+    
+    Optional<AllocationRun> findFirstByCycleIdAndInputFingerprintAndStatusOrderByCompletedAtDesc(
+        String cycleId, Long inputFingerprint, AllocationRun.RunStatus status);
+
+    /**
+     * A cycle's runs in the given status, archived or not, committed ones first, then newest
+     */
+    @Query("SELECT r FROM AllocationRun r WHERE r.cycle.id = :cycleId AND r.status = :status " +
+        "ORDER BY CASE WHEN r.committedAt IS NULL THEN 1 ELSE 0 END, r.completedAt DESC")
+    List<AllocationRun> findLatestByCycleId(String cycleId, AllocationRun.RunStatus status, Pageable pageable);
+
+    /**
+     * Most recent run with the given status of every cycle in the given cycle status
+     */
+    @Query("SELECT r FROM AllocationRun r JOIN FETCH r.cycle c WHERE c.status = :cycleStatus AND r.status = :status " +
+        "AND r.completedAt = (SELECT MAX(l.completedAt) FROM AllocationRun l WHERE l.cycle = r.cycle AND l.status = :status)")
+    List<AllocationRun> findLatestByCycleStatus(AllocationCycle.CycleStatus cycleStatus, AllocationRun.RunStatus status);
+
+    @Query("SELECT r.id FROM AllocationRun r WHERE r.archivedAt IS NULL AND r.status IN :statuses " +
+        "AND (r.cycle.status = :cycleStatus OR r.createdAt < :createdBefore) ORDER BY r.createdAt")
+    List<String> findArchivableIds(
+        Collection<AllocationRun.RunStatus> statuses,
+        AllocationCycle.CycleStatus cycleStatus,
+        Instant createdBefore
+    );
+
+    /**
+     * Mark a completed run committed; 0 when it is not COMPLETED or was committed already
+     */
+    @Modifying
+    @Query(value = "UPDATE allocation_runs SET committed_at = :now " +
+        "WHERE id = :id AND status = 'COMPLETED' AND committed_at IS NULL", nativeQuery = true)
+    int markCommitted(String id, Instant now);
+
+    // ============ JOB QUEUE ============
+
+    /**
+     * The oldest claimable runs of every owner, at most {@code limit} each, oldest first,
+     * as id, owner and the number of requests in the run's cycle
+     */
+    @Query(value = "SELECT id, created_by, queued_requests FROM (" +
+        "SELECT r.id, r.created_by, COALESCE(r.queued_requests, 0) AS queued_requests, r.created_at, " +
+        "ROW_NUMBER() OVER (PARTITION BY r.created_by ORDER BY r.created_at) AS owner_rank FROM allocation_runs r " +
+        "WHERE r.status = 'PENDING' OR (r.status = 'RUNNING' AND r.lease_expires_at < :now)) c " +
+        "WHERE owner_rank <= :limit ORDER BY created_at", nativeQuery = true)
+    List<Object[]> findClaimableCandidates(Instant now, int limit);
+
+    /**
+     * Claimable runs per owner, as owner, runs, their requests, and the runs and requests
+     * submitted no later than the given run
+     */
+    @Query(value = "SELECT r.created_by, COUNT(*), SUM(COALESCE(r.queued_requests, 0)), " +
+        "SUM(CASE WHEN r.created_at <= t.created_at THEN 1 ELSE 0 END), " +
+        "SUM(CASE WHEN r.created_at <= t.created_at THEN COALESCE(r.queued_requests, 0) ELSE 0 END) " +
+        "FROM allocation_runs r JOIN allocation_runs t ON t.id = :id " +
+        "WHERE r.status = 'PENDING' OR (r.status = 'RUNNING' AND r.lease_expires_at < :now) " +
+        "GROUP BY r.created_by", nativeQuery = true)
+    List<Object[]> summarizeClaimableByOwner(String id, Instant now);
+
+    /**
+     * Owner of the run, blank when it has none, if the run is claimable
+     */
+    @Query(value = "SELECT COALESCE(created_by, '') FROM allocation_runs WHERE id = :id " +
+        "AND (status = 'PENDING' OR (status = 'RUNNING' AND lease_expires_at < :now))", nativeQuery = true)
+    Optional<String> findClaimableOwner(String id, Instant now);
+
+    /**
+     * The given runs that are still claimable, locked for this transaction and skipped by concurrent claimers (PostgreSQL)
+     */
+    @Query(value = "SELECT id FROM allocation_runs WHERE id IN (:ids) " +
+        "AND (status = 'PENDING' OR (status = 'RUNNING' AND lease_expires_at < :now)) " +
+        "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<String> lockClaimable(Collection<String> ids, Instant now);
+
+    /**
+     * Runs executing under a live lease, per owner, as owner and count
+     */
+    @Query(value = "SELECT created_by, COUNT(*) FROM allocation_runs " +
+        "WHERE status = 'RUNNING' AND lease_expires_at >= :now GROUP BY created_by", nativeQuery = true)
+    List<Object[]> countRunningByOwner(Instant now);
+
+    /**
+     * CPU time of runs finished since the given instant, per owner, as owner and milliseconds
+     */
+    @Query(value = "SELECT created_by, SUM(cpu_time_ms) FROM allocation_runs " +
+        "WHERE completed_at >= :since AND cpu_time_ms IS NOT NULL GROUP BY created_by", nativeQuery = true)
+    List<Object[]> sumCpuTimeByOwnerSince(Instant since);
+
+    @Modifying
+    @Query(value = "UPDATE allocation_runs SET status = 'RUNNING', claimed_by = :owner, " +
+        "lease_expires_at = :leaseExpiresAt, heartbeat_at = :now, attempts = attempts + 1 " +
+        "WHERE id = :id AND (status = 'PENDING' OR (status = 'RUNNING' AND lease_expires_at < :now))",
+        nativeQuery = true)
+    int claim(String id, String owner, Instant now, Instant leaseExpiresAt);
+
+    @Modifying
+    @Query(value = "UPDATE allocation_runs SET lease_expires_at = :leaseExpiresAt, heartbeat_at = :now " +
+        "WHERE id IN (:ids) AND claimed_by = :owner AND status = 'RUNNING'", nativeQuery = true)
+    int heartbeat(Collection<String> ids, String owner, Instant now, Instant leaseExpiresAt);
+
+    /**
+     * Fail runs whose lease expired after their last allowed attempt instead of reclaiming them again
+     */
+    @Modifying
+    @Query(value = "UPDATE allocation_runs SET status = 'FAILED', completed_at = :now, " +
+        "error_message = 'Run lease expired after ' || attempts || ' attempts' " +
+        "WHERE status = 'RUNNING' AND lease_expires_at < :now AND attempts >= :maxAttempts",
+        nativeQuery = true)
+    int failExpired(Instant now, int maxAttempts);
+
+    /**
+     * Lease holder of a run, with the run row locked until the transaction ends.
+     * Pending changes are not flushed first, so they cannot overwrite the holder before it is read.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query(value = "SELECT claimed_by FROM allocation_runs WHERE id = :id FOR UPDATE", nativeQuery = true)
+    String lockClaimedBy(String id);
 }
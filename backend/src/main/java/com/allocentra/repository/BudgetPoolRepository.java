@@ -0,0 +1,13 @@
+package com.allocentra.repository;
+
+import com.allocentra.domain.BudgetPool;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BudgetPoolRepository extends JpaRepository<BudgetPool, String> {
+
+    Optional<BudgetPool> findByIdAndCycleId(String id, String cycleId);
+}
@@ -4,6 +4,7 @@ import com.allocentra.domain.Request;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,4 +19,21 @@ public interface RequestRepository extends JpaRepository<Request, String> {
     Page<Request> findByCycleIdAndCategory(String cycleId, com.allocentra.domain.ResourceCategory category, Pageable pageable);
     
     List<Request> findByCycleIdOrderByScoreDesc(String cycleId);
+    
+    List<Request> findByCycleId(String cycleId);
+    
+    long countByCycleId(String cycleId);
+    
+    @Query("SELECT r.inputHash FROM Request r WHERE r.id = :id")
+    Long findInputHashById(String id);
+
+    @Query(value = "SELECT id FROM requests WHERE cycle_id = :cycleId", nativeQuery = true)
+    List<String> findIdsByCycleId(String cycleId);
+
+    /**
+     * Dependency edges of a cycle's requests, as request id and dependency id
+     */
+    @Query(value = "SELECT d.request_id, d.dependency_id FROM request_dependencies d " +
+        "JOIN requests r ON r.id = d.request_id WHERE r.cycle_id = :cycleId", nativeQuery = true)
+    List<Object[]> findDependencyEdges(String cycleId);
 }
@@ -0,0 +1,16 @@
+package com.allocentra.repository;
+
+import com.allocentra.domain.RunPoolSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RunPoolSummaryRepository extends JpaRepository<RunPoolSummary, String> {
+
+    List<RunPoolSummary> findByRunIdAndScopeOrderByPoolKey(String runId, RunPoolSummary.Scope scope);
+
+    List<RunPoolSummary> findByRunIdInAndScope(Collection<String> runIds, RunPoolSummary.Scope scope);
+}
@@ -0,0 +1,422 @@
+package com.allocentra.scoring;
+
+import com.allocentra.domain.ResourceCategory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Recursive-descent parser that emits method handles instead of a syntax tree.
+ *
+ * <pre>
+ * formula     := condition ['?' formula ':' formula]
+ * condition   := conjunction {'||' conjunction}
+ * conjunction := comparison {'&&' comparison}
+ * comparison  := sum [('<' | '<=' | '>' | '>=' | '==' | '!=') sum]
+ * sum         := product {('+' | '-') product}
+ * product     := unary {('*' | '/' | '%') unary}
+ * unary       := ('-' | '!') unary | power
+ * power       := primary ['^' unary]
+ * primary     := number | variable | CATEGORY | function '(' formula {',' formula} ')' | '(' formula ')'
+ * </pre>
+ *
+ * Every sub-formula becomes a handle of type {@code (double[])double}. Comparisons
+ * and logic yield 1 or 0, and any non-zero value counts as true. Sub-formulas
+ * without variables are folded to constants while parsing.
+ */
+final class FormulaCompiler {
+
+    private static final MethodType FORMULA = MethodType.methodType(double.class, double[].class);
+    private static final MethodType UNARY = MethodType.methodType(double.class, double.class);
+    private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+    private static final MethodType TERNARY = MethodType.methodType(double.class, double.class, double.class, double.class);
+
+    private static final MethodHandle FACTOR = MethodHandles.arrayElementGetter(double[].class);
+    private static final MethodHandle IS_TRUE = find("isTrue", MethodType.methodType(boolean.class, double.class));
+
+    private static final Map<String, MethodHandle> OPERATORS = Map.ofEntries(
+        Map.entry("+", find("add", BINARY)),
+        Map.entry("-", find("subtract", BINARY)),
+        Map.entry("*", find("multiply", BINARY)),
+        Map.entry("/", find("divide", BINARY)),
+        Map.entry("%", find("remainder", BINARY)),
+        Map.entry("^", math("pow", BINARY)),
+        Map.entry("<", find("lessThan", BINARY)),
+        Map.entry("<=", find("lessOrEqual", BINARY)),
+        Map.entry(">", find("greaterThan", BINARY)),
+        Map.entry(">=", find("greaterOrEqual", BINARY)),
+        Map.entry("==", find("equal", BINARY)),
+        Map.entry("!=", find("notEqual", BINARY)),
+        Map.entry("neg", find("negate", UNARY)),
+        Map.entry("!", find("not", UNARY))
+    );
+
+    private static final Map<String, MethodHandle> FUNCTIONS = Map.ofEntries(
+        Map.entry("min", math("min", BINARY)),
+        Map.entry("max", math("max", BINARY)),
+        Map.entry("pow", math("pow", BINARY)),
+        Map.entry("abs", math("abs", UNARY)),
+        Map.entry("sqrt", math("sqrt", UNARY)),
+        Map.entry("log", math("log", UNARY)),
+        Map.entry("exp", math("exp", UNARY)),
+        Map.entry("floor", math("floor", UNARY)),
+        Map.entry("ceil", math("ceil", UNARY)),
+        Map.entry("clamp", find("clamp", TERNARY))
+    );
+
+    private final String text;
+    private int position;
+
+    FormulaCompiler(String text) {
+        this.text = text;
+    }
+
+    MethodHandle compile() {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Scoring formula is empty");
+        }
+        Compiled formula = formula();
+        skipWhitespace();
+        if (position < text.length()) {
+            throw error("Unexpected '" + text.charAt(position) + "'");
+        }
+        return formula.handle();
+    }
+
+    private Compiled formula() {
+        Compiled condition = condition();
+        if (!accept("?")) {
+            return condition;
+        }
+        Compiled whenTrue = formula();
+        expect(":");
+        Compiled whenFalse = formula();
+        if (condition.isConstant()) {
+            return isTrue(condition.value()) ? whenTrue : whenFalse;
+        }
+        return new Compiled(MethodHandles.guardWithTest(test(condition), whenTrue.handle(), whenFalse.handle()));
+    }
+
+    private Compiled condition() {
+        Compiled left = conjunction();
+        while (accept("||")) {
+            Compiled right = conjunction();
+            left = left.isConstant()
+                ? (isTrue(left.value()) ? constant(1) : truth(right))
+                : new Compiled(MethodHandles.guardWithTest(test(left), constant(1).handle(), truth(right).handle()));
+        }
+        return left;
+    }
+
+    private Compiled conjunction() {
+        Compiled left = comparison();
+        while (accept("&&")) {
+            Compiled right = comparison();
+            left = left.isConstant()
+                ? (isTrue(left.value()) ? truth(right) : constant(0))
+                : new Compiled(MethodHandles.guardWithTest(test(left), truth(right).handle(), constant(0).handle()));
+        }
+        return left;
+    }
+
+    private Compiled comparison() {
+        Compiled left = sum();
+        for (String operator : List.of("<=", ">=", "==", "!=", "<", ">")) {
+            if (accept(operator)) {
+                return apply(OPERATORS.get(operator), left, sum());
+            }
+        }
+        return left;
+    }
+
+    private Compiled sum() {
+        Compiled left = product();
+        while (true) {
+            if (accept("+")) {
+                left = apply(OPERATORS.get("+"), left, product());
+            } else if (accept("-")) {
+                left = apply(OPERATORS.get("-"), left, product());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Compiled product() {
+        Compiled left = unary();
+        while (true) {
+            if (accept("*")) {
+                left = apply(OPERATORS.get("*"), left, unary());
+            } else if (accept("/")) {
+                left = apply(OPERATORS.get("/"), left, unary());
+            } else if (accept("%")) {
+                left = apply(OPERATORS.get("%"), left, unary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Compiled unary() {
+        if (accept("-")) {
+            return apply(OPERATORS.get("neg"), unary());
+        }
+        // "!=" never starts an operand, so a leading '!' is always negation
+        if (accept("!")) {
+            return apply(OPERATORS.get("!"), unary());
+        }
+        return power();
+    }
+
+    private Compiled power() {
+        Compiled base = primary();
+        if (accept("^")) {
+            return apply(OPERATORS.get("^"), base, unary());
+        }
+        return base;
+    }
+
+    private Compiled primary() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Formula ends unexpectedly");
+        }
+        char next = text.charAt(position);
+        if (accept("(")) {
+            Compiled inner = formula();
+            expect(")");
+            return inner;
+        }
+        if (Character.isDigit(next) || next == '.') {
+            return number();
+        }
+        if (Character.isLetter(next) || next == '_') {
+            return identifier();
+        }
+        throw error("Unexpected '" + next + "'");
+    }
+
+    private Compiled number() {
+        int start = position;
+        while (position < text.length()
+            && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            return constant(Double.parseDouble(number));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    private Compiled identifier() {
+        int start = position;
+        while (position < text.length()
+            && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+            position++;
+        }
+        String name = text.substring(start, position);
+
+        if (accept("(")) {
+            MethodHandle function = FUNCTIONS.get(name.toLowerCase(Locale.ROOT));
+            if (function == null) {
+                position = start;
+                throw error("Unknown function '" + name + "'");
+            }
+            List<Compiled> arguments = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    arguments.add(formula());
+                } while (accept(","));
+                expect(")");
+            }
+            if (arguments.size() != function.type().parameterCount()) {
+                position = start;
+                throw error(name + " takes " + function.type().parameterCount() + " arguments");
+            }
+            return apply(function, arguments.toArray(Compiled[]::new));
+        }
+
+        int variable = ScoringFormula.VARIABLES.indexOf(name);
+        if (variable >= 0) {
+            return new Compiled(MethodHandles.insertArguments(FACTOR, 1, variable));
+        }
+        for (ResourceCategory category : ResourceCategory.values()) {
+            if (category.name().equals(name)) {
+                return constant(category.ordinal());
+            }
+        }
+        position = start;
+        throw error("Unknown variable '" + name + "'");
+    }
+
+    /**
+     * Apply an operation of doubles to sub-formulas, folding it if they are all constant
+     */
+    private static Compiled apply(MethodHandle operation, Compiled... operands) {
+        boolean constant = true;
+        MethodHandle[] handles = new MethodHandle[operands.length];
+        for (int i = 0; i < operands.length; i++) {
+            constant &= operands[i].isConstant();
+            handles[i] = operands[i].handle();
+        }
+
+        if (constant) {
+            Object[] values = new Object[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                values[i] = operands[i].value();
+            }
+            try {
+                return constant((double) operation.invokeWithArguments(values));
+            } catch (Throwable e) {
+                // Only constant operands get here, so the formula itself is at fault
+                throw new IllegalArgumentException("Scoring formula cannot be evaluated: " + e.getMessage(), e);
+            }
+        }
+
+        // Every operand reads the same factor vector
+        MethodHandle spread = MethodHandles.filterArguments(operation, 0, handles);
+        return new Compiled(MethodHandles.permuteArguments(spread, FORMULA, new int[operands.length]));
+    }
+
+    private static Compiled truth(Compiled formula) {
+        return formula.isConstant()
+            ? constant(isTrue(formula.value()) ? 1 : 0)
+            : apply(OPERATORS.get("!="), formula, constant(0));
+    }
+
+    private static MethodHandle test(Compiled condition) {
+        return MethodHandles.filterReturnValue(condition.handle(), IS_TRUE);
+    }
+
+    private static Compiled constant(double value) {
+        MethodHandle handle = MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+        return new Compiled(handle, value);
+    }
+
+    private boolean accept(String token) {
+        skipWhitespace();
+        if (!text.startsWith(token, position)) {
+            return false;
+        }
+        // Keep "<" from eating the start of "<=" and "!" from eating "!="
+        if (token.length() == 1 && "<>!=".indexOf(token.charAt(0)) >= 0
+            && position + 1 < text.length() && text.charAt(position + 1) == '=') {
+            return false;
+        }
+        position += token.length();
+        return true;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + (position + 1) + " of scoring formula");
+    }
+
+    private static MethodHandle find(String name, MethodType type) {
+        try {
+            return MethodHandles.lookup().findStatic(FormulaCompiler.class, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle math(String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findStatic(Math.class, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static boolean isTrue(double value) {
+        return value != 0;
+    }
+
+    private static double add(double a, double b) {
+        return a + b;
+    }
+
+    private static double subtract(double a, double b) {
+        return a - b;
+    }
+
+    private static double multiply(double a, double b) {
+        return a * b;
+    }
+
+    private static double divide(double a, double b) {
+        return a / b;
+    }
+
+    private static double remainder(double a, double b) {
+        return a % b;
+    }
+
+    private static double negate(double a) {
+        return -a;
+    }
+
+    private static double not(double a) {
+        return a == 0 ? 1 : 0;
+    }
+
+    private static double lessThan(double a, double b) {
+        return a < b ? 1 : 0;
+    }
+
+    private static double lessOrEqual(double a, double b) {
+        return a <= b ? 1 : 0;
+    }
+
+    private static double greaterThan(double a, double b) {
+        return a > b ? 1 : 0;
+    }
+
+    private static double greaterOrEqual(double a, double b) {
+        return a >= b ? 1 : 0;
+    }
+
+    private static double equal(double a, double b) {
+        return a == b ? 1 : 0;
+    }
+
+    private static double notEqual(double a, double b) {
+        return a != b ? 1 : 0;
+    }
+
+    private static double clamp(double value, double low, double high) {
+        return Math.min(high, Math.max(low, value));
+    }
+
+    /**
+     * A compiled sub-formula; constant ones also carry their value for folding
+     */
+    private record Compiled(MethodHandle handle, double value, boolean isConstant) {
+        Compiled(MethodHandle handle) {
+            this(handle, Double.NaN, false);
+        }
+
+        Compiled(MethodHandle handle, double value) {
+            this(handle, value, true);
+        }
+    }
+}
@@ -1,18 +1,29 @@
 package com.allocentra.scoring;
 
+import com.allocentra.domain.AllocationCycle;
 import com.allocentra.domain.Request;
+import com.allocentra.domain.ResourceCategory;
 import lombok.Builder;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Scoring engine that calculates request scores based on multiple factors
  * 
  * Formula: Score = (Priority × 0.30) + (Urgency × 0.25) + (Impact × 0.25) + (Risk × 0.15) + (Strategic × 0.05)
+ *
+ * A cycle can replace the built-in formula with its own {@link ScoringFormula}.
+ * Compiled formulas are cached by their text and shared by every cycle that uses it,
+ * up to {@code allocentra.scoring.formula-cache-size} formulas, least recently used evicted first.
  */
 @Service
 public class ScoringEngine {
@@ -32,6 +43,58 @@ public class ScoringEngine {
     @Value("${allocentra.scoring.weights.strategic:0.05}")
     private double strategicWeight;
 
+    @Value("${allocentra.scoring.formula-cache-size:256}")
+    private int formulaCacheSize;
+
+    // Least recently used first; the text comes from users, so the cache is bounded
+    private final Map<String, ScoringFormula> formulas = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Compiled formula for the given text, or null for the built-in formula
+     *
+     * @throws IllegalArgumentException if the text is not a valid formula
+     */
+    public ScoringFormula formula(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        synchronized (formulas) {
+            ScoringFormula cached = formulas.get(text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Compiled outside the lock; two threads compiling the same text at once is harmless
+        ScoringFormula compiled = ScoringFormula.compile(text);
+        synchronized (formulas) {
+            formulas.put(text, compiled);
+            Iterator<ScoringFormula> eldest = formulas.values().iterator();
+            while (formulas.size() > Math.max(1, formulaCacheSize) && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Check that a formula compiles without keeping it cached
+     *
+     * @throws IllegalArgumentException if the text is not a valid formula
+     */
+    public void validate(String text) {
+        if (text != null && !text.isBlank()) {
+            ScoringFormula.compile(text);
+        }
+    }
+
+    /**
+     * Formula a cycle scores with, or null when it uses the built-in one
+     */
+    public ScoringFormula formulaFor(AllocationCycle cycle) {
+        return formula(cycle.getScoringFormula());
+    }
+
     /**
      * Calculate total score for a request
      */
@@ -43,8 +106,22 @@ public class ScoringEngine {
      * Calculate score with specific evaluation date (for scenarios)
      */
     public double calculateScore(Request request, LocalDate evaluationDate) {
-        ScoreBreakdown breakdown = calculateBreakdown(request, evaluationDate);
-        return breakdown.getTotalScore();
+        return calculateScore(request, evaluationDate, null);
+    }
+
+    /**
+     * Calculate score with a cycle's formula, the built-in one when null
+     */
+    public double calculateScore(Request request, LocalDate evaluationDate, ScoringFormula formula) {
+        if (formula != null) {
+            return formula.evaluate(factors(request, evaluationDate));
+        }
+        // Same sum as the breakdown, without building it for every request
+        return (calculatePriorityScore(request) * priorityWeight) +
+            (calculateUrgencyScore(request, evaluationDate) * urgencyWeight) +
+            (calculateImpactScore(request) * impactWeight) +
+            (calculateRiskScore(request) * riskWeight) +
+            (calculateStrategicScore(request) * strategicWeight);
     }
 
     /**
@@ -58,21 +135,37 @@ public class ScoringEngine {
      * Calculate detailed score breakdown with specific evaluation date
      */
     public ScoreBreakdown calculateBreakdown(Request request, LocalDate evaluationDate) {
+        return calculateBreakdown(request, evaluationDate, null);
+    }
+
+    /**
+     * Calculate breakdown under a cycle's formula. A custom formula is not a weighted
+     * sum, so its components carry factor values with zero weight and contribution.
+     */
+    public ScoreBreakdown calculateBreakdown(Request request, LocalDate evaluationDate, ScoringFormula formula) {
         double priorityScore = calculatePriorityScore(request);
         double urgencyScore = calculateUrgencyScore(request, evaluationDate);
         double impactScore = calculateImpactScore(request);
         double riskScore = calculateRiskScore(request);
         double strategicScore = calculateStrategicScore(request);
 
-        double totalScore = 
-            (priorityScore * priorityWeight) +
-            (urgencyScore * urgencyWeight) +
-            (impactScore * impactWeight) +
-            (riskScore * riskWeight) +
-            (strategicScore * strategicWeight);
+        double priorityWeight = formula == null ? this.priorityWeight : 0;
+        double urgencyWeight = formula == null ? this.urgencyWeight : 0;
+        double impactWeight = formula == null ? this.impactWeight : 0;
+        double riskWeight = formula == null ? this.riskWeight : 0;
+        double strategicWeight = formula == null ? this.strategicWeight : 0;
+
+        double totalScore = formula != null
+            ? formula.evaluate(factors(request, evaluationDate))
+            : (priorityScore * priorityWeight) +
+                (urgencyScore * urgencyWeight) +
+                (impactScore * impactWeight) +
+                (riskScore * riskWeight) +
+                (strategicScore * strategicWeight);
 
         return ScoreBreakdown.builder()
             .totalScore(totalScore)
+            .formula(formula != null ? formula.getText() : null)
             .priority(ScoreComponent.builder()
                 .value(priorityScore)
                 .weight(priorityWeight)
@@ -104,6 +197,67 @@ public class ScoringEngine {
             .build();
     }
 
+    /**
+     * Weights in effect, as a stable string for fingerprinting run inputs
+     */
+    public String getWeightsSignature() {
+        return priorityWeight + "," + urgencyWeight + "," + impactWeight + "," + riskWeight + "," + strategicWeight;
+    }
+
+    /**
+     * Weights in effect, keyed by factor name
+     */
+    public Map<String, Double> getWeights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("priority", priorityWeight);
+        weights.put("urgency", urgencyWeight);
+        weights.put("impact", impactWeight);
+        weights.put("risk", riskWeight);
+        weights.put("strategic", strategicWeight);
+        return weights;
+    }
+
+    /**
+     * Formula text scoring exactly like the built-in formula under other weights, or null when they are the
+     * weights in effect. Terms are summed in the built-in order, so scores match to the last bit.
+     */
+    public String weightedFormulaText(Map<String, Double> weights) {
+        if (weights == null || weights.equals(getWeights())) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String factor : List.of("priority", "urgency", "impact", "risk", "strategic")) {
+            if (!text.isEmpty()) {
+                text.append(" + ");
+            }
+            double weight = weights.getOrDefault(factor, 0.0);
+            text.append(factor).append(" * ").append(BigDecimal.valueOf(weight).toPlainString());
+        }
+        return text.toString();
+    }
+
+    private double[] factors(Request request, LocalDate evaluationDate) {
+        boolean monetary = request.getCategory() == ResourceCategory.MONEY;
+        double[] factors = new double[ScoringFormula.VARIABLES.size()];
+        factors[ScoringFormula.PRIORITY] = calculatePriorityScore(request);
+        factors[ScoringFormula.URGENCY] = calculateUrgencyScore(request, evaluationDate);
+        factors[ScoringFormula.IMPACT] = calculateImpactScore(request);
+        factors[ScoringFormula.RISK] = calculateRiskScore(request);
+        factors[ScoringFormula.STRATEGIC] = calculateStrategicScore(request);
+        factors[ScoringFormula.DAYS] = ChronoUnit.DAYS.between(evaluationDate, request.getUrgencyDeadline());
+        factors[ScoringFormula.AMOUNT] = amount(monetary ? request.getAmountRequested() : request.getQuantityRequested());
+        factors[ScoringFormula.MINIMUM] = amount(monetary
+            ? request.getMinimumViableAllocation()
+            : request.getMinimumViableQuantity());
+        factors[ScoringFormula.DEPENDENCIES] = request.getDependencies() == null ? 0 : request.getDependencies().size();
+        factors[ScoringFormula.CATEGORY] = request.getCategory() == null ? -1 : request.getCategory().ordinal();
+        return factors;
+    }
+
+    private static double amount(BigDecimal value) {
+        return value == null ? 0 : value.doubleValue();
+    }
+
     private double calculatePriorityScore(Request request) {
         // Priority is 1-5, use directly
         return Math.min(5.0, Math.max(1.0, request.getPriority()));
@@ -144,6 +298,7 @@ public class ScoringEngine {
     @Builder
     public static class ScoreBreakdown {
         private double totalScore;
+        private String formula;
         private ScoreComponent priority;
         private ScoreComponent urgency;
         private ScoreComponent impact;
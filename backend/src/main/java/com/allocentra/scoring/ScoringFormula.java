@@ -0,0 +1,76 @@
+package com.allocentra.scoring;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * A cycle's custom scoring formula, compiled once into a method handle tree.
+ *
+ * Formulas are arithmetic over the request factors listed in {@link #VARIABLES},
+ * e.g. {@code priority * 0.4 + (days < 14 ? 5 : urgency) * 0.3 + (category == MONEY ? impact : risk) * 0.3}.
+ * See {@link FormulaCompiler} for the grammar. Scoring a request only fills a factor
+ * vector and invokes the compiled handle; the formula text is never walked again.
+ */
+public final class ScoringFormula {
+
+    /**
+     * Factor names in factor-vector order
+     */
+    public static final List<String> VARIABLES = List.of(
+        "priority",      // 1-5, clamped like the built-in formula
+        "urgency",       // 1-5 from the deadline, the built-in curve
+        "impact",        // impact level value
+        "risk",          // risk level value
+        "strategic",     // 1-5, clamped
+        "days",          // days until the deadline, negative once passed
+        "amount",        // amount or quantity requested
+        "minimum",       // minimum viable amount or quantity, 0 when unset
+        "dependencies",  // number of dependencies
+        "category"       // category ordinal, compare against MONEY, VEHICLES, ...
+    );
+
+    static final int PRIORITY = 0;
+    static final int URGENCY = 1;
+    static final int IMPACT = 2;
+    static final int RISK = 3;
+    static final int STRATEGIC = 4;
+    static final int DAYS = 5;
+    static final int AMOUNT = 6;
+    static final int MINIMUM = 7;
+    static final int DEPENDENCIES = 8;
+    static final int CATEGORY = 9;
+
+    private final String text;
+    private final MethodHandle handle;
+
+    private ScoringFormula(String text, MethodHandle handle) {
+        this.text = text;
+        this.handle = handle;
+    }
+
+    /**
+     * Parse and compile a formula
+     *
+     * @throws IllegalArgumentException if the text is not a valid formula
+     */
+    public static ScoringFormula compile(String text) {
+        return new ScoringFormula(text, new FormulaCompiler(text).compile());
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Score for a factor vector laid out as {@link #VARIABLES}
+     */
+    double evaluate(double[] factors) {
+        try {
+            return (double) handle.invokeExact(factors);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Scoring formula failed: " + text, e);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.allocentra.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a cycle's allocation inputs in a memory-mapped snapshot file.
+ *
+ * Requests are stored in rank order, amounts as longs scaled by {@link #AMOUNT_SCALE}
+ * and dependencies as compressed rows of request positions. All reads are absolute,
+ * so one mapping serves any number of threads, and other JVMs can map the same file
+ * with {@link #open(Path)}. A nested budget pool points at its parent pool, which
+ * always comes before it. Layout, little-endian:
+ *
+ * <pre>
+ * header   int magic, int version, int requests, int pools, int edges, int scale,
+ *          long fingerprint, long evaluationEpochDay, long reserved   (48 bytes)
+ * long     capacity[pools], requested[requests], minimum[requests] (-1 = none)
+ * double   score[requests]
+ * int      parent[pools] (-1 = top-level), poolOf[requests], dependencyStart[requests + 1], dependency[edges] (-1 = outside cycle)
+ * int      poolKeyEnd[pools], requestIdEnd[requests]
+ * byte     UTF-8 pool keys, then request ids
+ * </pre>
+ */
+public final class CycleSnapshot {
+
+    public static final int AMOUNT_SCALE = 2;
+    public static final long NO_MINIMUM = -1L;
+
+    private static final int MAGIC = 0x41435331;
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 48;
+
+    private final ByteBuffer buffer;
+    private final int requestCount;
+    private final int poolCount;
+    private final int edgeCount;
+    private final long fingerprint;
+    private final long evaluationEpochDay;
+
+    private final int capacityAt;
+    private final int requestedAt;
+    private final int minimumAt;
+    private final int scoreAt;
+    private final int parentAt;
+    private final int poolOfAt;
+    private final int dependencyStartAt;
+    private final int dependencyAt;
+    private final int poolKeyEndAt;
+    private final int stringsAt;
+
+    private CycleSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " cycle snapshot");
+        }
+        this.requestCount = buffer.getInt(8);
+        this.poolCount = buffer.getInt(12);
+        this.edgeCount = buffer.getInt(16);
+        this.fingerprint = buffer.getLong(24);
+        this.evaluationEpochDay = buffer.getLong(32);
+
+        this.capacityAt = HEADER_BYTES;
+        this.requestedAt = capacityAt + Long.BYTES * poolCount;
+        this.minimumAt = requestedAt + Long.BYTES * requestCount;
+        this.scoreAt = minimumAt + Long.BYTES * requestCount;
+        this.parentAt = scoreAt + Double.BYTES * requestCount;
+        this.poolOfAt = parentAt + Integer.BYTES * poolCount;
+        this.dependencyStartAt = poolOfAt + Integer.BYTES * requestCount;
+        this.dependencyAt = dependencyStartAt + Integer.BYTES * (requestCount + 1);
+        this.poolKeyEndAt = dependencyAt + Integer.BYTES * edgeCount;
+        // Pool key and request id end offsets form one contiguous table
+        this.stringsAt = poolKeyEndAt + Integer.BYTES * (poolCount + requestCount);
+    }
+
+    /**
+     * Map a snapshot file read-only. The mapping stays valid after the channel is closed.
+     */
+    public static CycleSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CycleSnapshot(mapped);
+        }
+    }
+
+    /**
+     * Write a snapshot to a temporary sibling and move it into place, so readers never see a partial file
+     */
+    static void write(Path target, Contents contents) throws IOException {
+        int requests = contents.requestIds().length;
+        int pools = contents.poolKeys().length;
+        int edges = contents.dependencies().length;
+
+        byte[][] poolKeys = utf8(contents.poolKeys());
+        byte[][] requestIds = utf8(contents.requestIds());
+        int stringBytes = 0;
+        for (byte[] key : poolKeys) {
+            stringBytes += key.length;
+        }
+        for (byte[] id : requestIds) {
+            stringBytes += id.length;
+        }
+
+        long size = HEADER_BYTES
+            + (long) Long.BYTES * (pools + 2L * requests)
+            + (long) Double.BYTES * requests
+            + (long) Integer.BYTES * (pools + requests + requests + 1 + edges + pools + requests)
+            + stringBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Snapshot exceeds 2 GB: " + size + " bytes");
+        }
+
+        ByteBuffer out = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(requests).putInt(pools).putInt(edges).putInt(AMOUNT_SCALE);
+        out.putLong(contents.fingerprint()).putLong(contents.evaluationEpochDay()).putLong(0L);
+
+        for (long capacity : contents.capacities()) {
+            out.putLong(capacity);
+        }
+        for (long requested : contents.requested()) {
+            out.putLong(requested);
+        }
+        for (long minimum : contents.minimums()) {
+            out.putLong(minimum);
+        }
+        for (double score : contents.scores()) {
+            out.putDouble(score);
+        }
+        for (int parent : contents.parents()) {
+            out.putInt(parent);
+        }
+        for (int pool : contents.poolOf()) {
+            out.putInt(pool);
+        }
+        for (int start : contents.dependencyStart()) {
+            out.putInt(start);
+        }
+        for (int dependency : contents.dependencies()) {
+            out.putInt(dependency);
+        }
+
+        int end = 0;
+        for (byte[] key : poolKeys) {
+            out.putInt(end += key.length);
+        }
+        for (byte[] id : requestIds) {
+            out.putInt(end += id.length);
+        }
+        for (byte[] key : poolKeys) {
+            out.put(key);
+        }
+        for (byte[] id : requestIds) {
+            out.put(id);
+        }
+        out.flip();
+
+        Files.createDirectories(target.getParent());
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (FileChannel channel = FileChannel.open(partial,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int requestCount() {
+        return requestCount;
+    }
+
+    public int poolCount() {
+        return poolCount;
+    }
+
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public long evaluationEpochDay() {
+        return evaluationEpochDay;
+    }
+
+    public long capacity(int pool) {
+        return buffer.getLong(capacityAt + Long.BYTES * pool);
+    }
+
+    public long requested(int request) {
+        return buffer.getLong(requestedAt + Long.BYTES * request);
+    }
+
+    public long minimum(int request) {
+        return buffer.getLong(minimumAt + Long.BYTES * request);
+    }
+
+    public double score(int request) {
+        return buffer.getDouble(scoreAt + Double.BYTES * request);
+    }
+
+    /**
+     * Parent of a nested budget pool, or -1 for a top-level pool
+     */
+    public int parent(int pool) {
+        return buffer.getInt(parentAt + Integer.BYTES * pool);
+    }
+
+    public int poolOf(int request) {
+        return buffer.getInt(poolOfAt + Integer.BYTES * request);
+    }
+
+    public int dependencyStart(int request) {
+        return buffer.getInt(dependencyStartAt + Integer.BYTES * request);
+    }
+
+    /**
+     * Rank position of a dependency edge's target, or -1 when it lies outside the cycle
+     */
+    public int dependency(int edge) {
+        return buffer.getInt(dependencyAt + Integer.BYTES * edge);
+    }
+
+    public String poolKey(int pool) {
+        return string(pool);
+    }
+
+    public String requestId(int request) {
+        return string(poolCount + request);
+    }
+
+    private String string(int index) {
+        int start = index == 0 ? 0 : buffer.getInt(poolKeyEndAt + Integer.BYTES * (index - 1));
+        int end = buffer.getInt(poolKeyEndAt + Integer.BYTES * index);
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringsAt + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] utf8(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    /**
+     * Arrays a snapshot is written from, requests already in rank order
+     */
+    record Contents(
+        long fingerprint,
+        long evaluationEpochDay,
+        String[] poolKeys,
+        long[] capacities,
+        int[] parents,
+        String[] requestIds,
+        int[] poolOf,
+        double[] scores,
+        long[] requested,
+        long[] minimums,
+        int[] dependencyStart,
+        int[] dependencies
+    ) {
+    }
+}
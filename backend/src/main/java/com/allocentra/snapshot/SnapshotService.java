@@ -0,0 +1,306 @@
+package com.allocentra.snapshot;
+
+import com.allocentra.allocator.AllocationEngine;
+import com.allocentra.allocator.BudgetTree;
+import com.allocentra.allocator.InputFingerprintService;
+import com.allocentra.domain.*;
+import com.allocentra.repository.AllocationCycleRepository;
+import com.allocentra.repository.RequestRepository;
+import com.allocentra.scoring.ScoringEngine;
+import com.allocentra.scoring.ScoringFormula;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Writes cycle snapshots once per distinct input and runs simulations against them.
+ *
+ * Snapshot files are named by the fingerprint of the inputs they were built from,
+ * so an unchanged cycle is never written twice and every simulation thread reads
+ * the same mapping. Older snapshots of a cycle are deleted when a new one is written.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotService {
+
+    private static final String SUFFIX = ".snap";
+
+    private final AllocationCycleRepository cycleRepository;
+    private final RequestRepository requestRepository;
+    private final ScoringEngine scoringEngine;
+    private final InputFingerprintService fingerprintService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Path, CycleSnapshot> mapped = new ConcurrentHashMap<>();
+
+    @Value("${allocentra.snapshot.directory:${java.io.tmpdir}/allocentra-snapshots}")
+    private String directory;
+
+    @Value("${allocentra.snapshot.max-trials:10000}")
+    private int maxTrials;
+
+    /**
+     * Snapshot of the cycle's current inputs, written on first use
+     */
+    public CycleSnapshot snapshot(String cycleId, LocalDate evaluationDate) {
+        long fingerprint = fingerprintService.snapshotFingerprint(cycleId, evaluationDate);
+        // The layout version is part of the name, so files of an older layout are rewritten rather than misread
+        Path file = Path.of(directory, cycleId, Long.toHexString(fingerprint) + "-v" + CycleSnapshot.VERSION + SUFFIX);
+
+        CycleSnapshot cached = mapped.get(file);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Building is rare and heavy, one at a time is enough
+        synchronized (this) {
+            cached = mapped.get(file);
+            if (cached != null) {
+                return cached;
+            }
+            try {
+                if (!Files.exists(file)) {
+                    CycleSnapshot.write(file, transactionTemplate.execute(status ->
+                        contents(cycleId, evaluationDate, fingerprint)));
+                    removeOlderSnapshots(file);
+                    log.info("Wrote snapshot {} ({} bytes)", file, Files.size(file));
+                }
+                CycleSnapshot snapshot = CycleSnapshot.open(file);
+                mapped.put(file, snapshot);
+                return snapshot;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to snapshot cycle " + cycleId, e);
+            }
+        }
+    }
+
+    /**
+     * Run independent trials in parallel, each with capacities scaled by the given
+     * multipliers and randomly perturbed by up to {@code jitter} of their value
+     */
+    public Simulation simulate(
+        String cycleId,
+        Map<String, Double> capacityMultipliers,
+        boolean allowPartial,
+        int trials,
+        double jitter,
+        long seed
+    ) {
+        if (trials < 1 || trials > maxTrials) {
+            throw new IllegalArgumentException("trials must be between 1 and " + maxTrials);
+        }
+        CycleSnapshot snapshot = snapshot(cycleId, LocalDate.now());
+
+        long[] baseCapacities = new long[snapshot.poolCount()];
+        for (int pool = 0; pool < baseCapacities.length; pool++) {
+            double multiplier = capacityMultipliers.getOrDefault(snapshot.poolKey(pool), 1.0);
+            baseCapacities[pool] = (long) (snapshot.capacity(pool) * multiplier);
+        }
+
+        // Each worker thread folds its trials into one accumulator; trial outcomes are not kept
+        Totals totals = IntStream.range(0, trials).parallel()
+            .mapToObj(trial -> {
+                SplittableRandom random = new SplittableRandom(seed + trial);
+                long[] capacities = new long[baseCapacities.length];
+                for (int pool = 0; pool < capacities.length; pool++) {
+                    double factor = jitter > 0 ? 1 + jitter * (2 * random.nextDouble() - 1) : 1;
+                    capacities[pool] = Math.max(0L, (long) (baseCapacities[pool] * factor));
+                }
+                return SnapshotSimulator.simulate(snapshot, capacities, allowPartial);
+            })
+            .collect(() -> new Totals(baseCapacities.length), Totals::add, Totals::merge);
+
+        // Against the capacities the trials actually had, which jitter moves off the base
+        List<PoolFigures> pools = new ArrayList<>();
+        for (int pool = 0; pool < baseCapacities.length; pool++) {
+            BigDecimal capacity = BigDecimal.valueOf(totals.capacity[pool], CycleSnapshot.AMOUNT_SCALE)
+                .divide(BigDecimal.valueOf(trials), CycleSnapshot.AMOUNT_SCALE, RoundingMode.HALF_UP);
+            BigDecimal meanAllocated = BigDecimal.valueOf(totals.allocated[pool], CycleSnapshot.AMOUNT_SCALE)
+                .divide(BigDecimal.valueOf(trials), CycleSnapshot.AMOUNT_SCALE, RoundingMode.HALF_UP);
+            Double utilization = totals.capacity[pool] > 0
+                ? BigDecimal.valueOf(totals.allocated[pool])
+                    .divide(BigDecimal.valueOf(totals.capacity[pool]), 4, RoundingMode.HALF_UP).doubleValue()
+                : null;
+            pools.add(new PoolFigures(snapshot.poolKey(pool), capacity, meanAllocated, utilization));
+        }
+
+        return new Simulation(
+            snapshot.requestCount(),
+            trials,
+            (double) totals.approved / trials,
+            (double) totals.partial / trials,
+            (double) totals.deferred / trials,
+            (double) totals.denied / trials,
+            pools
+        );
+    }
+
+    private CycleSnapshot.Contents contents(String cycleId, LocalDate evaluationDate, long fingerprint) {
+        AllocationCycle cycle = cycleRepository.findById(cycleId)
+            .orElseThrow(() -> new RuntimeException("Cycle not found"));
+
+        // Pools in the order the engine keys them, then any pool a request names but the cycle lacks
+        Map<String, Integer> poolIds = new LinkedHashMap<>();
+        List<Long> capacities = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        BudgetTree budgets = BudgetTree.of(cycle.getBudgetPools());
+        for (int node = 0; node < budgets.size(); node++) {
+            poolIds.put(budgets.key(node), capacities.size());
+            capacities.add(scaled(budgets.capacity(node)));
+            parents.add(budgets.parent(node));
+        }
+        for (ResourcePool pool : cycle.getResourcePools()) {
+            poolIds.put(pool.getCategory().name() + ":" + pool.getResourceType(), capacities.size());
+            capacities.add(scaled(pool.getTotalQuantity()));
+            parents.add(-1);
+        }
+
+        // Ranked like the engine: stable sort by score, highest first
+        ScoringFormula formula = scoringEngine.formulaFor(cycle);
+        List<Request> requests = requestRepository.findByCycleId(cycleId);
+        int size = requests.size();
+        double[] unsortedScores = new double[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            unsortedScores[i] = scoringEngine.calculateScore(requests.get(i), evaluationDate, formula);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> unsortedScores[i]).reversed());
+
+        Map<String, Integer> positionById = new HashMap<>(size * 2);
+        for (int position = 0; position < size; position++) {
+            positionById.put(requests.get(order[position]).getId(), position);
+        }
+
+        String[] requestIds = new String[size];
+        int[] poolOf = new int[size];
+        double[] scores = new double[size];
+        long[] requested = new long[size];
+        long[] minimums = new long[size];
+        int[] dependencyStart = new int[size + 1];
+        List<Integer> dependencies = new ArrayList<>();
+
+        for (int position = 0; position < size; position++) {
+            Request request = requests.get(order[position]);
+            boolean monetary = request.getCategory() == ResourceCategory.MONEY;
+            requestIds[position] = request.getId();
+            poolOf[position] = poolIds.computeIfAbsent(AllocationEngine.poolKey(request), key -> {
+                capacities.add(0L);
+                parents.add(-1);
+                return capacities.size() - 1;
+            });
+            scores[position] = unsortedScores[order[position]];
+            requested[position] = scaled(monetary ? request.getAmountRequested() : request.getQuantityRequested());
+            BigDecimal minimum = monetary ? request.getMinimumViableAllocation() : request.getMinimumViableQuantity();
+            minimums[position] = minimum != null ? scaled(minimum) : CycleSnapshot.NO_MINIMUM;
+
+            dependencyStart[position] = dependencies.size();
+            for (String dependencyId : request.getDependencies()) {
+                dependencies.add(positionById.getOrDefault(dependencyId, -1));
+            }
+        }
+        dependencyStart[size] = dependencies.size();
+
+        return new CycleSnapshot.Contents(
+            fingerprint,
+            evaluationDate.toEpochDay(),
+            poolIds.keySet().toArray(String[]::new),
+            capacities.stream().mapToLong(Long::longValue).toArray(),
+            parents.stream().mapToInt(Integer::intValue).toArray(),
+            requestIds,
+            poolOf,
+            scores,
+            requested,
+            minimums,
+            dependencyStart,
+            dependencies.stream().mapToInt(Integer::intValue).toArray()
+        );
+    }
+
+    private void removeOlderSnapshots(Path current) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(current.getParent(), "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (!file.equals(current)) {
+                    // Open mappings stay readable after the file is unlinked
+                    mapped.remove(file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static long scaled(BigDecimal value) {
+        if (value == null) {
+            return 0L;
+        }
+        return value.setScale(CycleSnapshot.AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Mean outcome of a batch of simulation trials
+     */
+    public record Simulation(
+        int requests,
+        int trials,
+        double meanApproved,
+        double meanPartial,
+        double meanDeferred,
+        double meanDenied,
+        List<PoolFigures> pools
+    ) {
+    }
+
+    public record PoolFigures(String poolKey, BigDecimal capacity, BigDecimal meanAllocated, Double utilization) {
+    }
+
+    private static final class Totals {
+        long approved;
+        long partial;
+        long deferred;
+        long denied;
+        final long[] capacity;
+        final long[] allocated;
+
+        Totals(int pools) {
+            this.capacity = new long[pools];
+            this.allocated = new long[pools];
+        }
+
+        void add(SnapshotSimulator.Outcome outcome) {
+            approved += outcome.approved();
+            partial += outcome.partial();
+            deferred += outcome.deferred();
+            denied += outcome.denied();
+            for (int pool = 0; pool < allocated.length; pool++) {
+                capacity[pool] += outcome.capacities()[pool];
+                allocated[pool] += outcome.allocated()[pool];
+            }
+        }
+
+        void merge(Totals other) {
+            approved += other.approved;
+            partial += other.partial;
+            deferred += other.deferred;
+            denied += other.denied;
+            for (int pool = 0; pool < allocated.length; pool++) {
+                capacity[pool] += other.capacity[pool];
+                allocated[pool] += other.allocated[pool];
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.allocentra.snapshot;
+
+/**
+ * Greedy allocation over a mapped snapshot, following the engine's rules.
+ *
+ * A simulation reads the snapshot in place and only allocates its own remaining
+ * capacities and one status byte per request, so concurrent simulations share
+ * the mapping and cost no per-request objects. A request in a nested budget pool
+ * is limited by the tightest pool on its path to the root and draws from each of
+ * them, so a pool's allocated total covers its subtree.
+ */
+final class SnapshotSimulator {
+
+    static final byte PENDING = 0;
+    static final byte APPROVED = 1;
+    static final byte PARTIAL = 2;
+    static final byte DEFERRED = 3;
+    static final byte DENIED = 4;
+
+    private SnapshotSimulator() {
+    }
+
+    /**
+     * Allocate against the given capacities, one per snapshot pool
+     */
+    static Outcome simulate(CycleSnapshot snapshot, long[] capacities, boolean allowPartial) {
+        int requests = snapshot.requestCount();
+        long[] remaining = capacities.clone();
+        long[] allocated = new long[capacities.length];
+        byte[] status = new byte[requests];
+        int[] counts = new int[DENIED + 1];
+
+        for (int i = 0; i < requests; i++) {
+            if (!dependenciesMet(snapshot, status, i)) {
+                status[i] = DEFERRED;
+            } else {
+                int pool = snapshot.poolOf(i);
+                long requested = snapshot.requested(i);
+                long minimum = snapshot.minimum(i);
+                long headroom = remaining[pool];
+                for (int up = snapshot.parent(pool); up >= 0; up = snapshot.parent(up)) {
+                    headroom = Math.min(headroom, remaining[up]);
+                }
+
+                if (headroom >= requested) {
+                    status[i] = APPROVED;
+                    draw(snapshot, remaining, allocated, pool, requested);
+                } else if (allowPartial && minimum != CycleSnapshot.NO_MINIMUM && headroom >= minimum) {
+                    status[i] = PARTIAL;
+                    draw(snapshot, remaining, allocated, pool, headroom);
+                } else {
+                    status[i] = DENIED;
+                }
+            }
+            counts[status[i]]++;
+        }
+
+        return new Outcome(counts[APPROVED], counts[PARTIAL], counts[DEFERRED], counts[DENIED], capacities, allocated);
+    }
+
+    private static void draw(CycleSnapshot snapshot, long[] remaining, long[] allocated, int pool, long amount) {
+        for (int at = pool; at >= 0; at = snapshot.parent(at)) {
+            allocated[at] += amount;
+            remaining[at] -= amount;
+        }
+    }
+
+    /**
+     * Dependencies must be ranked ahead and fully approved, as in the engine
+     */
+    private static boolean dependenciesMet(CycleSnapshot snapshot, byte[] status, int request) {
+        int end = snapshot.dependencyStart(request + 1);
+        for (int edge = snapshot.dependencyStart(request); edge < end; edge++) {
+            int dependency = snapshot.dependency(edge);
+            if (dependency < 0 || dependency >= request || status[dependency] != APPROVED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Status counts, and per pool the capacity the trial ran against and what it allocated
+     */
+    record Outcome(int approved, int partial, int deferred, int denied, long[] capacities, long[] allocated) {
+    }
+}
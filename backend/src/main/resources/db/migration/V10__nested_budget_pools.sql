@@ -0,0 +1,9 @@
+-- Allocentra Database Schema V10
+-- Budget pools nested under a parent pool, and requests drawing from a nested pool
+
+ALTER TABLE budget_pools ADD COLUMN name VARCHAR(255);
+ALTER TABLE budget_pools ADD COLUMN parent_id VARCHAR(36) REFERENCES budget_pools(id) ON DELETE CASCADE;
+
+CREATE INDEX idx_budget_parent ON budget_pools(parent_id);
+
+ALTER TABLE requests ADD COLUMN budget_pool_id VARCHAR(36) REFERENCES budget_pools(id);
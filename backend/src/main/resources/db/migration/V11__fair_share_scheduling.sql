@@ -0,0 +1,6 @@
+-- Allocentra Database Schema V11
+-- CPU time of each run, charged to its owner by the fair-share scheduler
+
+ALTER TABLE allocation_runs ADD COLUMN cpu_time_ms BIGINT;
+
+CREATE INDEX idx_runs_owner_completed ON allocation_runs(created_by, completed_at);
@@ -0,0 +1,21 @@
+-- Allocentra Database Schema V12
+-- Constraint violations as bits of an integer column on each result instead of one child row each
+
+ALTER TABLE allocation_results ADD COLUMN constraint_violations INTEGER NOT NULL DEFAULT 0;
+
+-- Bits match ConstraintViolation; a result holds each type at most once, so the sum is the mask
+UPDATE allocation_results SET constraint_violations = (
+    SELECT COALESCE(SUM(CASE c.constraint_type
+        WHEN 'BUDGET_EXHAUSTED' THEN 1
+        WHEN 'BUDGET_LIMITED' THEN 2
+        WHEN 'RESOURCE_EXHAUSTED' THEN 4
+        WHEN 'RESOURCE_LIMITED' THEN 8
+        WHEN 'DEPENDENCY_NOT_MET' THEN 16
+        WHEN 'BELOW_MINIMUM_VIABLE' THEN 32
+        ELSE 0 END), 0)
+    FROM allocation_result_constraints c
+    WHERE c.result_id = allocation_results.id
+)
+WHERE id IN (SELECT result_id FROM allocation_result_constraints);
+
+DROP TABLE allocation_result_constraints;
@@ -0,0 +1,8 @@
+-- Allocentra Database Schema V13
+-- Requests and budget pools remember what they were carried forward from when a cycle is rolled forward
+
+ALTER TABLE requests ADD COLUMN carried_from_id VARCHAR(36);
+ALTER TABLE budget_pools ADD COLUMN carried_from_id VARCHAR(36);
+
+CREATE INDEX idx_requests_cycle_carried_from ON requests(cycle_id, carried_from_id);
+CREATE INDEX idx_budget_cycle_carried_from ON budget_pools(cycle_id, carried_from_id);
@@ -0,0 +1,4 @@
+-- Allocentra Database Schema V14
+-- How a run shares each pool: greedily in rank order, or as weighted max-min fair shares
+
+ALTER TABLE allocation_runs ADD COLUMN allocation_mode VARCHAR(20) NOT NULL DEFAULT 'GREEDY';
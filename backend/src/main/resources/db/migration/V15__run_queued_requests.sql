@@ -0,0 +1,9 @@
+-- Allocentra Database Schema V15
+-- Requests in a run's cycle when it was submitted, so the scheduler need not count them on every poll
+
+ALTER TABLE allocation_runs ADD COLUMN queued_requests INTEGER;
+
+UPDATE allocation_runs SET queued_requests = (SELECT COUNT(*) FROM requests q WHERE q.cycle_id = allocation_runs.cycle_id)
+WHERE status IN ('PENDING', 'RUNNING');
+
+CREATE INDEX idx_runs_owner_created ON allocation_runs(created_by, created_at);
@@ -0,0 +1,10 @@
+-- Allocentra Database Schema V2
+-- Durable run queue: instances claim PENDING runs and hold them with a heartbeat lease
+
+ALTER TABLE allocation_runs ADD COLUMN claimed_by VARCHAR(255);
+ALTER TABLE allocation_runs ADD COLUMN lease_expires_at TIMESTAMP;
+ALTER TABLE allocation_runs ADD COLUMN heartbeat_at TIMESTAMP;
+ALTER TABLE allocation_runs ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
+
+CREATE INDEX idx_runs_queue ON allocation_runs(status, created_at);
+CREATE INDEX idx_runs_lease ON allocation_runs(status, lease_expires_at);
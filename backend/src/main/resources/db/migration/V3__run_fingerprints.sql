@@ -0,0 +1,10 @@
+-- Allocentra Database Schema V3
+-- Input fingerprints so identical runs can be answered from a previous completed run
+
+ALTER TABLE allocation_cycles ADD COLUMN input_fingerprint BIGINT;
+ALTER TABLE requests ADD COLUMN input_hash BIGINT;
+
+ALTER TABLE allocation_runs ADD COLUMN evaluation_date DATE;
+ALTER TABLE allocation_runs ADD COLUMN input_fingerprint BIGINT;
+
+CREATE INDEX idx_runs_fingerprint ON allocation_runs(cycle_id, input_fingerprint);
@@ -0,0 +1,7 @@
+-- Allocentra Database Schema V4
+-- Runs whose results were moved to archive files; the run row itself stays
+
+ALTER TABLE allocation_runs ADD COLUMN archived_at TIMESTAMP;
+ALTER TABLE allocation_runs ADD COLUMN archive_path VARCHAR(1000);
+
+CREATE INDEX idx_runs_archived ON allocation_runs(archived_at);
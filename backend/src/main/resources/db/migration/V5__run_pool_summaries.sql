@@ -0,0 +1,23 @@
+-- Allocentra Database Schema V5
+-- Per-pool and per-category rollups written by the engine when a run completes
+
+CREATE TABLE run_pool_summaries (
+    id VARCHAR(36) PRIMARY KEY,
+    run_id VARCHAR(36) NOT NULL REFERENCES allocation_runs(id) ON DELETE CASCADE,
+    scope VARCHAR(20) NOT NULL,
+    pool_key VARCHAR(255) NOT NULL,
+    category VARCHAR(50) NOT NULL,
+    resource_type VARCHAR(255),
+    capacity DECIMAL(19,2) NOT NULL,
+    requested DECIMAL(19,2) NOT NULL,
+    allocated DECIMAL(19,2) NOT NULL,
+    utilization DOUBLE PRECISION,
+    request_count INTEGER NOT NULL,
+    approved_count INTEGER NOT NULL,
+    partial_count INTEGER NOT NULL,
+    deferred_count INTEGER NOT NULL,
+    denied_count INTEGER NOT NULL,
+    CONSTRAINT chk_summary_scope CHECK (scope IN ('POOL', 'CATEGORY'))
+);
+
+CREATE INDEX idx_pool_summaries_run ON run_pool_summaries(run_id, scope);
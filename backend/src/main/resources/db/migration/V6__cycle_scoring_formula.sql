@@ -0,0 +1,4 @@
+-- Allocentra Database Schema V6
+-- Per-cycle scoring formulas replacing the built-in weighted sum
+
+ALTER TABLE allocation_cycles ADD COLUMN scoring_formula VARCHAR(2000);
@@ -0,0 +1,7 @@
+-- Allocentra Database Schema V7
+-- Optimistic versions on pools and committing a completed run's allocations to them
+
+ALTER TABLE budget_pools ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE resource_pools ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE allocation_runs ADD COLUMN committed_at TIMESTAMP;
@@ -0,0 +1,6 @@
+-- Allocentra Database Schema V8
+-- Figures behind each explanation's remediation suggestions
+
+ALTER TABLE decision_explanations ADD COLUMN score_needed DOUBLE PRECISION;
+ALTER TABLE decision_explanations ADD COLUMN pool_increase_needed DECIMAL(19,2);
+ALTER TABLE decision_explanations ADD COLUMN largest_fundable_amount DECIMAL(19,2);
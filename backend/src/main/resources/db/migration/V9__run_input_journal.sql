@@ -0,0 +1,5 @@
+-- Allocentra Database Schema V9
+-- Where each run's inputs were appended to the input journal
+
+ALTER TABLE allocation_runs ADD COLUMN input_journal_path VARCHAR(1000);
+ALTER TABLE allocation_runs ADD COLUMN input_journal_offset BIGINT;
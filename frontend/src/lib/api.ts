@@ -56,6 +56,17 @@ export const api = {
     return data
   },
 
+  getRunSummary: async (runId: string) => {
+    const { data } = await client.get(`/runs/${runId}/summary`)
+    return data
+  },
+
+  // Dashboard
+  getDashboardSummary: async () => {
+    const { data } = await client.get('/dashboard/summary')
+    return data
+  },
+
   // Health
   health: async () => {
     const { data } = await client.get('/health')
@@ -1,5 +1,5 @@
 import { useQuery } from '@tanstack/react-query'
-import { TrendingUp, DollarSign, Users, AlertTriangle, CheckCircle, Clock } from 'lucide-react'
+import { TrendingUp, DollarSign, Users, AlertTriangle, CheckCircle, Clock, Calendar } from 'lucide-react'
 import { api } from '@/lib/api'
 
 export function Dashboard() {
@@ -8,7 +8,14 @@ export function Dashboard() {
     queryFn: api.getCycles,
   })
 
+  // Totals come from the per-run rollups, not from individual results
+  const { data: summary } = useQuery({
+    queryKey: ['dashboard-summary'],
+    queryFn: api.getDashboardSummary,
+  })
+
   const activeCycles = cycles?.filter(c => c.status === 'ACTIVE') || []
+  const categories: any[] = summary?.categories || []
 
   return (
     <div className="p-8">
@@ -27,20 +34,20 @@ export function Dashboard() {
           color="accent"
         />
         <StatusCard
-          title="Pending Requests"
-          value={142}
+          title="Deferred Requests"
+          value={summary?.deferred ?? 0}
           icon={AlertTriangle}
           color="warning"
         />
         <StatusCard
-          title="Approved This Month"
-          value={89}
+          title="Approved in Latest Runs"
+          value={(summary?.approved ?? 0) + (summary?.partial ?? 0)}
           icon={CheckCircle}
           color="success"
         />
         <StatusCard
           title="Budget Allocated"
-          value="$1.2M"
+          value={formatAmount(summary?.budgetAllocated ?? 0)}
           icon={DollarSign}
           color="accent"
         />
@@ -78,6 +85,32 @@ export function Dashboard() {
         )}
       </div>
 
+      {/* Category Utilization */}
+      {categories.length > 0 && (
+        <div className="bg-ops-surface rounded-lg border border-ops-border p-6 mt-8">
+          <h2 className="text-xl font-bold text-ops-text mb-4">Utilization by Category</h2>
+          <div className="space-y-4">
+            {categories.map(category => (
+              <div key={category.category}>
+                <div className="flex items-center justify-between text-sm mb-1">
+                  <span className="text-ops-text">{category.category}</span>
+                  <span className="text-ops-muted">
+                    {category.allocated} / {category.capacity}
+                    {category.utilization != null && ` (${Math.round(category.utilization * 100)}%)`}
+                  </span>
+                </div>
+                <div className="h-2 bg-ops-bg rounded-full overflow-hidden">
+                  <div
+                    className="h-full bg-ops-accent"
+                    style={{ width: `${Math.min(100, (category.utilization ?? 0) * 100)}%` }}
+                  />
+                </div>
+              </div>
+            ))}
+          </div>
+        </div>
+      )}
+
       {/* Readiness Indicators */}
       <div className="grid grid-cols-1 md:grid-cols-3 gap-6 mt-8">
         <ReadinessCard
@@ -100,6 +133,12 @@ export function Dashboard() {
   )
 }
 
+function formatAmount(amount: number) {
+  if (amount >= 1_000_000) return `$${(amount / 1_000_000).toFixed(1)}M`
+  if (amount >= 1_000) return `$${(amount / 1_000).toFixed(1)}K`
+  return `$${amount}`
+}
+
 function StatusCard({ title, value, icon: Icon, color }: {
   title: string
   value: string | number